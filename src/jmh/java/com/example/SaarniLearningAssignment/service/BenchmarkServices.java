@@ -0,0 +1,38 @@
+package com.example.SaarniLearningAssignment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+/**
+ * Services wired by hand for the benchmarks, with the defaults of application.properties
+ * unless a benchmark parameter says otherwise.
+ */
+final class BenchmarkServices {
+
+    private BenchmarkServices() {
+    }
+
+    /**
+     * @param mode sequential, parallel (chunked, every file size) or columnar (sequential, columnar batch)
+     */
+    static CsvProcessingService csvProcessingService(String mode) {
+        CsvProcessingService service = new CsvProcessingService(new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "parallelEnabled", "parallel".equals(mode));
+        ReflectionTestUtils.setField(service, "parallelMinFileSize", 0L);
+        ReflectionTestUtils.setField(service, "parallelChunkSize", 8L << 20);
+        ReflectionTestUtils.setField(service, "parallelThreads", 0);
+        ReflectionTestUtils.setField(service, "columnar", "columnar".equals(mode));
+        return service;
+    }
+
+    static JsonWriterService jsonWriterService(Path outputFolder) {
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+        JsonWriterService writer = new JsonWriterService(new CsvProcessingService(metrics),
+                new OutputSerializer(true, OutputFormat.JSON, OutputCompression.NONE), metrics);
+        ReflectionTestUtils.setField(writer, "outputFolder", outputFolder.toString());
+        ReflectionTestUtils.setField(writer, "parallelOutput", true);
+        return writer;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic course completion data for the benchmarks.
+ *
+ * - Every row is valid, so parse benchmarks measure the accepted-row path
+ * - {@code duplicateRatio} is the share of rows that repeat an earlier email+course pair,
+ *   e.g. 0.5 gives half as many records after deduplication as there are rows
+ * - Users take 20 courses each, and the same seed always gives the same data
+ *
+ * The CSV and the records describe the same rows, so a benchmark on either sees the same key distribution.
+ */
+final class CsvDataGenerator {
+
+    static final String HEADER = "Etunimi,Sukunimi,E-mail,Kurssin nimi,Kurssi alkaa,Kurssi päättyy,Status,Arvosana,Kurssin suorituspäivämäärä";
+
+    private static final int COURSES_PER_USER = 20;
+    private static final String[] STATUSES = {"completed", "failed", "inprogress"};
+    private static final LocalDate START = LocalDate.of(2022, 9, 1);
+    private static final LocalDate END = LocalDate.of(2022, 11, 30);
+
+    private CsvDataGenerator() {
+    }
+
+    /**
+     * Writes a CSV file with a header and the given number of rows.
+     */
+    static Path writeCsv(Path file, int rows, double duplicateRatio, long seed) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.write('\n');
+            Rows generated = new Rows(duplicateRatio, seed);
+            StringBuilder line = new StringBuilder(160);
+            for (int i = 0; i < rows; i++) {
+                generated.next();
+                line.setLength(0);
+                line.append("First").append(generated.user % 97).append(",Last").append(generated.user % 89).append(',')
+                        .append(generated.email()).append(',').append(generated.course()).append(',')
+                        .append(START).append(',').append(END).append(',').append(generated.status).append(',')
+                        .append(generated.grade == null ? "" : generated.grade).append(',')
+                        .append(generated.completion == null ? "" : generated.completion).append('\n');
+                writer.append(line);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the same rows as {@link #writeCsv} as records, without going through the parser.
+     */
+    static List<CourseRecord> records(int rows, double duplicateRatio, long seed) {
+        List<CourseRecord> records = new ArrayList<>(rows);
+        Rows generated = new Rows(duplicateRatio, seed);
+        for (int i = 0; i < rows; i++) {
+            generated.next();
+            records.add(new CourseRecord("First" + generated.user % 97, "Last" + generated.user % 89,
+                    generated.email(), generated.course(), START, END, generated.status, generated.grade,
+                    generated.completion));
+        }
+        return records;
+    }
+
+    /**
+     * Row values generated one at a time; a new key is a new email+course pair, a duplicate
+     * picks one of the pairs generated so far.
+     */
+    private static final class Rows {
+        private final double duplicateRatio;
+        private final SplittableRandom random;
+        private int keys;
+
+        int user;
+        int course;
+        String status;
+        Integer grade;
+        LocalDate completion;
+
+        Rows(double duplicateRatio, long seed) {
+            this.duplicateRatio = duplicateRatio;
+            this.random = new SplittableRandom(seed);
+        }
+
+        void next() {
+            int key = keys > 0 && random.nextDouble() < duplicateRatio ? random.nextInt(keys) : keys++;
+            user = key / COURSES_PER_USER;
+            course = key % COURSES_PER_USER;
+            status = STATUSES[random.nextInt(STATUSES.length)];
+            boolean inprogress = "inprogress".equals(status);
+            grade = "completed".equals(status) ? 1 + random.nextInt(5) : null;
+            completion = inprogress ? null : START.plusDays(random.nextInt(90));
+        }
+
+        String email() {
+            return "user" + user + "@example.com";
+        }
+
+        String course() {
+            return "Course " + course;
+        }
+    }
+}
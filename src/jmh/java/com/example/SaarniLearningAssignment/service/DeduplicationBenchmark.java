@@ -0,0 +1,51 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offering every parsed record to a deduplication state: one object per record
+ * ({@link RecordDeduplicator}) or the columnar {@link CourseRecordBatch}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeduplicationBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int rows;
+
+    @Param({"0.0", "0.5", "0.9"})
+    double duplicateRatio;
+
+    private List<CourseRecord> records;
+
+    @Setup
+    public void setUp() {
+        records = CsvDataGenerator.records(rows, duplicateRatio, 42);
+    }
+
+    @Benchmark
+    public RecordDeduplicator recordDeduplicator() {
+        RecordDeduplicator deduplicator = new RecordDeduplicator();
+        for (CourseRecord record : records) {
+            deduplicator.offer(record);
+        }
+        return deduplicator;
+    }
+
+    @Benchmark
+    public CourseRecordBatch columnarBatch() {
+        CourseRecordBatch batch = new CourseRecordBatch();
+        for (CourseRecord record : records) {
+            batch.offer(record);
+        }
+        return batch;
+    }
+}
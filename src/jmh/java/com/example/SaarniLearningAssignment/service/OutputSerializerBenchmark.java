@@ -0,0 +1,81 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.CourseDTO;
+import com.example.SaarniLearningAssignment.dto.ResultDTO;
+import com.example.SaarniLearningAssignment.dto.UserDTO;
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-file cost of writing the three output files of a small input, as when many small files arrive:
+ * - per-call-mapper: a new ObjectMapper configured for every file, as writeOutputs used to do
+ * - pretty, compact: the cached {@link OutputSerializer} writers
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutputSerializerBenchmark {
+
+    @Param({"per-call-mapper", "pretty", "compact"})
+    String writer;
+
+    @Param({"50"})
+    int records;
+
+    private SummaryAggregator summary;
+    private OutputSerializer serializer;
+    private Path outputFolder;
+
+    @Setup
+    public void setUp() throws IOException {
+        summary = new SummaryAggregator().acceptAll(sampleRecords(records));
+        serializer = new OutputSerializer(!"compact".equals(writer), OutputFormat.JSON, OutputCompression.NONE);
+        outputFolder = Files.createTempDirectory("serializer-benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        JsonWriterService.deleteRecursively(outputFolder);
+    }
+
+    @Benchmark
+    public void writeFiles() throws IOException {
+        if ("per-call-mapper".equals(writer)) {
+            ObjectMapper mapper = OutputSerializer.createMapper();
+            mapper.enable(SerializationFeature.INDENT_OUTPUT);
+            mapper.writeValue(outputFolder.resolve("courses.json").toFile(), summary.courses());
+            mapper.writeValue(outputFolder.resolve("users.json").toFile(), summary.users());
+            mapper.writeValue(outputFolder.resolve("course_results.json").toFile(), summary.results());
+        } else {
+            serializer.writeAll(outputFolder.resolve("courses.json"), CourseDTO.class, summary.courses());
+            serializer.writeAll(outputFolder.resolve("users.json"), UserDTO.class, summary.users());
+            serializer.writeAll(outputFolder.resolve("course_results.json"), ResultDTO.class, summary.results());
+        }
+    }
+
+    private static List<CourseRecord> sampleRecords(int count) {
+        String[] statuses = {"completed", "failed", "inprogress"};
+        List<CourseRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String status = statuses[i % statuses.length];
+            boolean inprogress = "inprogress".equals(status);
+            records.add(new CourseRecord("First" + i, "Last" + i, "user" + i + "@example.com", "Course " + (i % 5),
+                    LocalDate.of(2022, 9, 1), LocalDate.of(2022, 11, 30), status,
+                    inprogress ? null : 1 + i % 5, inprogress ? null : LocalDate.of(2022, 10, 1 + i % 28)));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-file parsing: {@link CsvProcessingService#parseAndFilter(Path)} reads, validates and
+ * deduplicates a generated CSV file, sequentially, in parallel chunks, or into a columnar batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int rows;
+
+    @Param({"0.0", "0.5", "0.9"})
+    double duplicateRatio;
+
+    @Param({"sequential", "parallel", "columnar"})
+    String mode;
+
+    private Path file;
+    private CsvProcessingService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = CsvDataGenerator.writeCsv(Files.createTempFile("parse-benchmark", ".csv"), rows, duplicateRatio, 42);
+        service = BenchmarkServices.csvProcessingService(mode);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        service.shutdownParsePool();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<CourseRecord> parseAndFilter() throws IOException {
+        return service.parseAndFilter(file);
+    }
+}
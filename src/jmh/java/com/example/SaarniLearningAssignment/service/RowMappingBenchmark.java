@@ -0,0 +1,57 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecordMapper;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one already tokenized CSV row into a {@link com.example.SaarniLearningAssignment.model.CourseRecord}
+ * ({@link CourseRecordMapper#map}), with a new mapper and string pool per batch as per file in the pipeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"0.0", "0.5", "0.9"})
+    double duplicateRatio;
+
+    private Map<String, Integer> header;
+    private List<CSVRecord> records;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path file = CsvDataGenerator.writeCsv(Files.createTempFile("mapping-benchmark", ".csv"), ROWS, duplicateRatio, 42);
+        try (CSVParser parser = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build().parse(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            header = parser.getHeaderMap();
+            records = parser.getRecords();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void map(Blackhole blackhole) {
+        CourseRecordMapper mapper = CourseRecordMapper.forHeader(header);
+        for (CSVRecord record : records) {
+            blackhole.consume(mapper.map(record));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.CourseDTO;
+import com.example.SaarniLearningAssignment.dto.ResultDTO;
+import com.example.SaarniLearningAssignment.dto.UserDTO;
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The summarize methods of {@link CsvProcessingService} on deduplicated records, as the writer gets them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummarizeBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int rows;
+
+    @Param({"0.0", "0.5", "0.9"})
+    double duplicateRatio;
+
+    private List<CourseRecord> records;
+    private CsvProcessingService service;
+
+    @Setup
+    public void setUp() {
+        RecordDeduplicator deduplicator = new RecordDeduplicator();
+        CsvDataGenerator.records(rows, duplicateRatio, 42).forEach(deduplicator::offer);
+        records = deduplicator.records();
+        service = BenchmarkServices.csvProcessingService("sequential");
+    }
+
+    @Benchmark
+    public SummaryAggregator summarize() {
+        return service.summarize(records);
+    }
+
+    @Benchmark
+    public List<CourseDTO> summarizeCourses() {
+        return service.summarizeCourses(records);
+    }
+
+    @Benchmark
+    public List<UserDTO> summarizeUsers() {
+        return service.summarizeUsers(records);
+    }
+
+    @Benchmark
+    public List<ResultDTO> summarizeResults() {
+        return service.summarizeResults(records);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JsonWriterService#writeOutputs(List, String)} on deduplicated records: summaries plus the
+ * three pretty-printed JSON files, written to a temporary folder that is emptied after every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteOutputsBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int rows;
+
+    @Param({"0.0", "0.5", "0.9"})
+    double duplicateRatio;
+
+    private List<CourseRecord> records;
+    private Path outputFolder;
+    private JsonWriterService writer;
+    private int invocation;
+
+    @Setup
+    public void setUp() throws IOException {
+        RecordDeduplicator deduplicator = new RecordDeduplicator();
+        CsvDataGenerator.records(rows, duplicateRatio, 42).forEach(deduplicator::offer);
+        records = deduplicator.records();
+        outputFolder = Files.createTempDirectory("write-benchmark");
+        writer = BenchmarkServices.jsonWriterService(outputFolder);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearOutputs() throws IOException {
+        JsonWriterService.deleteRecursively(outputFolder);
+        Files.createDirectories(outputFolder);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.shutdownOutputPool();
+        JsonWriterService.deleteRecursively(outputFolder);
+    }
+
+    @Benchmark
+    public Path writeOutputs() throws IOException {
+        // A new name per call, so folders created within the same second do not replace each other
+        return writer.writeOutputs(records, "benchmark" + invocation++ + ".csv");
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.SaarniLearningAssignment.controller;
+
+import com.example.SaarniLearningAssignment.dto.CacheStatsDTO;
+import com.example.SaarniLearningAssignment.service.ResultCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller exposing the state of the result cache.
+ *
+ * - GET /v1/records/cache returns hit, miss, store and eviction counts and the current size
+ */
+@RestController
+@RequestMapping("/v1/records/cache")
+@Tag(name = "Course Records", description = "Upload course completion CSV files")
+public class CacheController {
+
+    private final ResultCache resultCache;
+
+    public CacheController(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    @Operation(
+            summary = "Get result cache statistics",
+            description = "Files whose content was processed before are not parsed again; their cached outputs are reused. "
+                    + "Counters start from zero when the application starts."
+    )
+    @GetMapping
+    public CacheStatsDTO getStats() {
+        return resultCache.stats();
+    }
+}
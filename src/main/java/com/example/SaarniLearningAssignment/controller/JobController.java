@@ -0,0 +1,112 @@
+package com.example.SaarniLearningAssignment.controller;
+
+import com.example.SaarniLearningAssignment.dto.JobStatusDTO;
+import com.example.SaarniLearningAssignment.service.JobRegistry;
+import com.example.SaarniLearningAssignment.service.ProcessingJob;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * REST controller for following uploaded files through processing.
+ *
+ * - GET /v1/records/jobs/{id} returns the current status; with {@code wait} it long-polls until the job finishes
+ * - GET /v1/records/jobs/{id}/events streams every status change as server-sent events until the job finishes
+ */
+@RestController
+@RequestMapping("/v1/records/jobs")
+@Tag(name = "Course Records", description = "Upload course completion CSV files")
+public class JobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobController.class);
+
+    @Value("${app.jobs.max-wait}")
+    private long maxWaitMillis;
+    @Value("${app.jobs.events-timeout}")
+    private long eventsTimeoutMillis;
+
+    private final JobRegistry jobRegistry;
+
+    public JobController(JobRegistry jobRegistry) {
+        this.jobRegistry = jobRegistry;
+    }
+
+    @Operation(
+            summary = "Get the status of a processing job",
+            description = "Returns the state (queued, parsing, writing, done, error), row counts, timings and output folder. "
+                    + "With wait > 0 the request is held until the job finishes or the wait time (capped by app.jobs.max-wait) has passed."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Current job status"),
+            @ApiResponse(responseCode = "404", description = "Unknown job, or finished longer ago than the retention period")
+    })
+    @GetMapping("/{id}")
+    public DeferredResult<ResponseEntity<JobStatusDTO>> getJob(
+            @PathVariable String id,
+            @Parameter(description = "Seconds to wait for the job to finish (0 = return immediately)")
+            @RequestParam(defaultValue = "0") long wait
+    ) {
+        Optional<ProcessingJob> found = jobRegistry.find(id);
+        if (found.isEmpty()) {
+            DeferredResult<ResponseEntity<JobStatusDTO>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.notFound().build());
+            return result;
+        }
+        ProcessingJob job = found.get();
+
+        long timeout = Math.min(Math.max(wait, 0) * 1000, maxWaitMillis);
+        DeferredResult<ResponseEntity<JobStatusDTO>> result = new DeferredResult<>(Math.max(timeout, 1));
+        if (timeout == 0 || job.getState().isFinished()) {
+            result.setResult(ResponseEntity.ok(job.snapshot()));
+            return result;
+        }
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(job.snapshot())));
+        job.completion().thenAccept(status -> result.setResult(ResponseEntity.ok(status)));
+        return result;
+    }
+
+    @Operation(
+            summary = "Stream status changes of a processing job",
+            description = "Server-sent events named 'status', one per state change, starting with the current state. "
+                    + "The stream ends when the job is done or has failed."
+    )
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(@PathVariable String id) {
+        Optional<ProcessingJob> found = jobRegistry.find(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(eventsTimeoutMillis);
+        AtomicReference<Runnable> unsubscribe = new AtomicReference<>(() -> {});
+        unsubscribe.set(found.get().subscribe(status -> {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(status, MediaType.APPLICATION_JSON));
+                if (status.getFinishedAt() != null) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Job event stream for {} closed: {}", id, e.getMessage());
+                unsubscribe.get().run();
+            }
+        }));
+        emitter.onCompletion(() -> unsubscribe.get().run());
+        emitter.onTimeout(() -> unsubscribe.get().run());
+        return ResponseEntity.ok(emitter);
+    }
+}
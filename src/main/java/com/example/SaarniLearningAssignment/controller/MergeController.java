@@ -0,0 +1,60 @@
+package com.example.SaarniLearningAssignment.controller;
+
+import com.example.SaarniLearningAssignment.service.MergeStateStore;
+import com.example.SaarniLearningAssignment.service.OutputSerializer;
+import com.example.SaarniLearningAssignment.service.SummaryAggregator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * REST controller for the school-wide view built by applying every processed file onto the merged state.
+ *
+ * - GET /v1/records/merged returns the courses, users and results of all files processed so far
+ * - Only available with {@code app.merge.enabled=true}
+ */
+@RestController
+@RequestMapping("/v1/records/merged")
+@Tag(name = "Course Records", description = "Upload course completion CSV files")
+public class MergeController {
+
+    private final MergeStateStore mergeStateStore;
+    private final OutputSerializer outputSerializer;
+
+    public MergeController(MergeStateStore mergeStateStore, OutputSerializer outputSerializer) {
+        this.mergeStateStore = mergeStateStore;
+        this.outputSerializer = outputSerializer;
+    }
+
+    @Operation(
+            summary = "Get the merged view of all processed files",
+            description = "Returns a JSON object with courses, users and results arrays, like POST /v1/records/process, "
+                    + "keeping the latest attempt per email and course across every file processed so far."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Merged summaries"),
+            @ApiResponse(responseCode = "404", description = "Merge mode is not enabled")
+    })
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> getMerged() {
+        if (!mergeStateStore.isEnabled()) {
+            byte[] body = "Merge mode is not enabled (app.merge.enabled).".getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body(out -> out.write(body));
+        }
+        MergeStateStore.MergedView view = mergeStateStore.view();
+        StreamingResponseBody response = out -> outputSerializer.writeJsonSummary(
+                out, view.courses(), view.users(), SummaryAggregator.resultsOf(view.records()));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.SaarniLearningAssignment.controller;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.example.SaarniLearningAssignment.service.CsvProcessingService;
+import com.example.SaarniLearningAssignment.service.JsonWriterService;
+import com.example.SaarniLearningAssignment.service.OutputSerializer;
+import com.example.SaarniLearningAssignment.service.SummaryAggregator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * REST controller for processing course CSV data synchronously, without going through the input folder.
+ *
+ * - The CSV is streamed from the request straight into CsvProcessingService
+ * - The course, user and result summaries are returned as one JSON object
+ *   ({@code courses}, {@code users}, {@code results}) with the same snake_case fields as the output files
+ * - Writing the usual output folder is optional ({@code persist=true})
+ * - At most {@code app.process.max-concurrent} requests are processed at the same time; more are
+ *   refused with 429, as these requests do not wait in the input folder like uploads
+ * - A request's records (and any spill files behind them) are released when the response is done,
+ *   and also when it times out, fails or the client goes away before the body is written
+ */
+@RestController
+@RequestMapping("/v1/records")
+@Tag(name = "Course Records", description = "Upload course completion CSV files")
+public class ProcessController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessController.class);
+
+    private static final String RELEASE_INTERCEPTOR = ProcessController.class.getName() + ".release";
+
+    @Value("${app.process.max-concurrent}")
+    private int maxConcurrent;
+
+    private final CsvProcessingService csvProcessingService;
+    private final JsonWriterService jsonWriterService;
+    private final OutputSerializer outputSerializer;
+    private Semaphore permits;
+
+    public ProcessController(CsvProcessingService csvProcessingService, JsonWriterService jsonWriterService,
+                             OutputSerializer outputSerializer) {
+        this.csvProcessingService = csvProcessingService;
+        this.jsonWriterService = jsonWriterService;
+        this.outputSerializer = outputSerializer;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (maxConcurrent < 1) {
+            throw new IllegalStateException("app.process.max-concurrent must be at least 1");
+        }
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Processes a CSV sent as the raw request body ({@code text/csv}).
+     */
+    @Operation(
+            summary = "Process a CSV body and return the summaries",
+            description = "Send the CSV as the request body (Content-Type: text/csv). "
+                    + "The response contains the courses, users and results that would otherwise be written to the output folder."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "CSV processed, summaries in the response"),
+            @ApiResponse(responseCode = "400", description = "CSV could not be parsed"),
+            @ApiResponse(responseCode = "429", description = "Too many CSVs are being processed"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(path = "/process", consumes = {"text/csv", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<StreamingResponseBody> processCsv(
+            HttpServletRequest request,
+            InputStream body,
+            @Parameter(description = "Also write the output folder, as for uploaded files")
+            @RequestParam(defaultValue = "false") boolean persist,
+            @Parameter(description = "Name used for the output folder when persisting")
+            @RequestParam(defaultValue = "upload") String name
+    ) {
+        return process(request, body, name, persist);
+    }
+
+    /**
+     * Processes a CSV sent as a multipart file, like the upload endpoint.
+     */
+    @Operation(summary = "Process a CSV file and return the summaries")
+    @PostMapping(path = "/process", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> processCsvFile(
+            HttpServletRequest request,
+            @Parameter(description = "CSV file to process", required = true)
+            @RequestParam("file") MultipartFile file,
+            @Parameter(description = "Also write the output folder, as for uploaded files")
+            @RequestParam(defaultValue = "false") boolean persist
+    ) {
+        String name = StringUtils.cleanPath(file.getOriginalFilename() == null ? "upload" : file.getOriginalFilename());
+        try (InputStream is = file.getInputStream()) {
+            return process(request, is, name, persist);
+        } catch (IOException e) {
+            logger.error("Error reading uploaded CSV: {}", e.getMessage(), e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to read the uploaded file.");
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> process(HttpServletRequest request, InputStream body,
+                                                          String name, boolean persist) {
+        if (!permits.tryAcquire()) {
+            logger.warn("Refused CSV for processing: {} requests already in progress", maxConcurrent);
+            return error(HttpStatus.TOO_MANY_REQUESTS, "Too many CSVs are being processed, try again later.");
+        }
+        Processing processing = new Processing();
+        boolean streaming = false;
+        try {
+            List<CourseRecord> records;
+            try {
+                records = csvProcessingService.parseAndFilter(body);
+            } catch (RuntimeException e) {
+                String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                logger.warn("Rejected CSV for processing: {}", reason);
+                return error(HttpStatus.BAD_REQUEST, "Failed to parse CSV: " + reason);
+            }
+            processing.records = records;
+
+            if (persist) {
+                try {
+                    jsonWriterService.writeOutputs(records, outputName(name));
+                } catch (IOException e) {
+                    logger.error("Error writing outputs for {}: {}", name, e.getMessage(), e);
+                    return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to write the output files.");
+                }
+            }
+
+            // The body may never run (timeout, client gone), so the async request's completion releases too
+            WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(RELEASE_INTERCEPTOR,
+                    new CallableProcessingInterceptor() {
+                        @Override
+                        public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                            processing.release();
+                        }
+                    });
+            // Summaries are computed while the response is written; results are streamed from the records
+            StreamingResponseBody response = out -> {
+                try {
+                    SummaryAggregator summary = csvProcessingService.summarize(records, false);
+                    outputSerializer.writeJsonSummary(out, summary.courses(), summary.users(), SummaryAggregator.resultsOf(records));
+                } finally {
+                    processing.release();
+                }
+            };
+            streaming = true;
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+        } finally {
+            if (!streaming) {
+                processing.release();
+            }
+        }
+    }
+
+    /**
+     * The permit and the records of one request, released once by whichever of the body, the async
+     * completion or an early error response gets there first.
+     */
+    private final class Processing {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private List<CourseRecord> records;
+
+        void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            // Deletes the spill files behind records that were deduplicated on disk
+            if (records instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to delete spilled records: {}", e.getMessage());
+                }
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Plain-text error response; the streaming body type is shared with the success case.
+     */
+    private static ResponseEntity<StreamingResponseBody> error(HttpStatus status, String message) {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(out -> out.write(body));
+    }
+
+    /**
+     * Reduces a client-supplied name to a plain file name, so it cannot point outside the output folder.
+     */
+    private static String outputName(String name) {
+        Path fileName;
+        try {
+            fileName = Paths.get(name).getFileName();
+        } catch (InvalidPathException e) {
+            fileName = null;
+        }
+        String safe = fileName == null || fileName.toString().isBlank() ? "upload" : fileName.toString();
+        return safe.toLowerCase().endsWith(".csv") ? safe : safe + ".csv";
+    }
+}
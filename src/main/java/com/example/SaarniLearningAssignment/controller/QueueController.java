@@ -0,0 +1,55 @@
+package com.example.SaarniLearningAssignment.controller;
+
+import com.example.SaarniLearningAssignment.dto.QueueStatusDTO;
+import com.example.SaarniLearningAssignment.service.IngestionQueue;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller exposing the state of the ingestion queue.
+ *
+ * - GET /v1/records/queue returns the queue depth and capacity, the files waiting, uploading and
+ *   being processed, and how long the oldest waiting file has waited
+ * - While the queue is full the status is 503 with a Retry-After header, so a load balancer health
+ *   check can send uploads to another instance
+ */
+@RestController
+@RequestMapping("/v1/records/queue")
+@Tag(name = "Course Records", description = "Upload course completion CSV files")
+public class QueueController {
+
+    private final IngestionQueue ingestionQueue;
+
+    public QueueController(IngestionQueue ingestionQueue) {
+        this.ingestionQueue = ingestionQueue;
+    }
+
+    @Operation(
+            summary = "Get ingestion queue status",
+            description = "Uploads are refused with 429 while depth (waiting files plus uploads in progress) "
+                    + "is at or above capacity."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Queue accepts uploads"),
+            @ApiResponse(responseCode = "503", description = "Queue full; retry after the Retry-After seconds")
+    })
+    @GetMapping
+    public ResponseEntity<QueueStatusDTO> getStatus() {
+        QueueStatusDTO status = ingestionQueue.status();
+        if (status.getDepth() < status.getCapacity()) {
+            return ResponseEntity.ok(status);
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(status.getRetryAfterSeconds()))
+                .body(status);
+    }
+}
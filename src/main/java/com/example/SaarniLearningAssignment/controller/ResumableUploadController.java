@@ -0,0 +1,175 @@
+package com.example.SaarniLearningAssignment.controller;
+
+import com.example.SaarniLearningAssignment.service.IngestionQueue;
+import com.example.SaarniLearningAssignment.service.UploadStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.util.Optional;
+
+/**
+ * REST controller for uploading very large CSV files in several requests.
+ *
+ * - POST /v1/records/uploads?fileName=...&length=... starts an upload; Location points to it
+ * - PATCH /v1/records/uploads/{id} with an Upload-Offset header appends the body at that offset;
+ *   the request that completes the file returns 202 with the Location of its job, like a normal upload
+ * - HEAD /v1/records/uploads/{id} returns the Upload-Offset to continue from after a dropped connection
+ * - DELETE /v1/records/uploads/{id} cancels the upload
+ *
+ * The file only appears in the input folder once all bytes have arrived (see {@link UploadStore}).
+ * Its place in the processing queue is reserved when the upload starts, so a started upload is never
+ * refused for a full queue when it completes.
+ */
+@RestController
+@RequestMapping("/v1/records/uploads")
+@Tag(name = "Course Records", description = "Upload course completion CSV files")
+public class ResumableUploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadController.class);
+
+    static final String UPLOAD_OFFSET = "Upload-Offset";
+    static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final UploadStore uploadStore;
+
+    public ResumableUploadController(UploadStore uploadStore) {
+        this.uploadStore = uploadStore;
+    }
+
+    @Operation(
+            summary = "Start a resumable upload",
+            description = "Announces a CSV file of the given length. Send its bytes with PATCH requests to the returned Location."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Upload started; Location points to it"),
+            @ApiResponse(responseCode = "400", description = "Invalid file name or length"),
+            @ApiResponse(responseCode = "413", description = "Length larger than app.upload.max-size"),
+            @ApiResponse(responseCode = "429", description = "Processing queue full; retry after the Retry-After seconds")
+    })
+    @PostMapping
+    public ResponseEntity<String> start(
+            @Parameter(description = "Name of the CSV file", required = true)
+            @RequestParam String fileName,
+            @Parameter(description = "Total size of the file in bytes", required = true)
+            @RequestParam long length
+    ) {
+        if (!fileName.toLowerCase().endsWith(".csv")) {
+            logger.warn("Rejected file upload: {} is not a .csv", fileName);
+            return ResponseEntity.badRequest().body("Only CSV files (.csv) are allowed.");
+        }
+        try {
+            UploadStore.UploadSession session = uploadStore.start(fileName, length);
+            return ResponseEntity.created(URI.create("/v1/records/uploads/" + session.getId()))
+                    .header(UPLOAD_OFFSET, "0")
+                    .header(UPLOAD_LENGTH, String.valueOf(length))
+                    .body("Upload started.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return UploadController.failed(e);
+        }
+    }
+
+    @Operation(summary = "Get the offset to continue a resumable upload from")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Upload-Offset and Upload-Length headers"),
+            @ApiResponse(responseCode = "404", description = "Unknown, completed, cancelled or expired upload")
+    })
+    @RequestMapping(path = "/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> offset(@PathVariable String id) {
+        Optional<UploadStore.UploadSession> session = uploadStore.find(id);
+        if (session.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(session.get().getOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(session.get().getLength()))
+                .build();
+    }
+
+    @Operation(
+            summary = "Append bytes to a resumable upload",
+            description = "The body is written at Upload-Offset, which must equal the bytes received so far. "
+                    + "When the upload is complete the file is queued for processing."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Upload complete and queued; Location points to the job status"),
+            @ApiResponse(responseCode = "204", description = "Bytes stored; Upload-Offset is the new offset"),
+            @ApiResponse(responseCode = "404", description = "Unknown, completed, cancelled or expired upload"),
+            @ApiResponse(responseCode = "409", description = "Upload-Offset does not match; the response has the current one. "
+                    + "Or, once complete, a file of the same name is being processed: repeat the request later with an empty body"),
+            @ApiResponse(responseCode = "413", description = "More bytes than the announced length")
+    })
+    @PatchMapping(path = "/{id}", consumes = {"application/offset+octet-stream", MediaType.APPLICATION_OCTET_STREAM_VALUE, "text/csv"})
+    public ResponseEntity<String> append(
+            @PathVariable String id,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            InputStream body
+    ) {
+        Optional<UploadStore.UploadSession> session = uploadStore.find(id);
+        if (session.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown upload " + id);
+        }
+        try {
+            UploadStore.Progress progress = uploadStore.append(session.get(), offset, body);
+            if (progress.job() != null) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .location(URI.create("/v1/records/jobs/" + progress.job().getId()))
+                        .header(UPLOAD_OFFSET, String.valueOf(progress.offset()))
+                        .body("CSV uploaded successfully and queued for processing.");
+            }
+            return ResponseEntity.noContent().header(UPLOAD_OFFSET, String.valueOf(progress.offset())).build();
+        } catch (UploadStore.OffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getOffset()))
+                    .body(e.getMessage());
+        } catch (IngestionQueue.InFlightException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(session.get().getOffset()))
+                    .body(e.getMessage());
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (UploadStore.TooLargeException e) {
+            return UploadController.failed(e);
+        } catch (IOException e) {
+            // Typically a dropped connection; the bytes received so far are kept for the next PATCH
+            logger.warn("Upload {} stopped at offset {}: {}", id, session.get().getOffset(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .header(UPLOAD_OFFSET, String.valueOf(session.get().getOffset()))
+                    .body("Upload interrupted; continue from Upload-Offset.");
+        }
+    }
+
+    @Operation(summary = "Cancel a resumable upload")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Upload cancelled and its bytes deleted"),
+            @ApiResponse(responseCode = "404", description = "Unknown, completed, cancelled or expired upload")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancel(@PathVariable String id) {
+        Optional<UploadStore.UploadSession> session = uploadStore.find(id);
+        if (session.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            uploadStore.cancel(session.get());
+        } catch (IOException e) {
+            logger.error("Failed to delete cancelled upload {}: {}", id, e.getMessage(), e);
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
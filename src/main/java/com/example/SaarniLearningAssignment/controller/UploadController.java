@@ -1,4 +1,7 @@
 package com.example.SaarniLearningAssignment.controller;
+import com.example.SaarniLearningAssignment.service.IngestionQueue;
+import com.example.SaarniLearningAssignment.service.ProcessingJob;
+import com.example.SaarniLearningAssignment.service.UploadStore;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -10,22 +13,30 @@ import io.swagger.v3.oas.annotations.parameters.RequestBody;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.*;
+import java.io.InputStream;
+import java.net.URI;
 
 /**
  * REST controller for handling file uploads of CSV course data.
  *
  * - Accepts a multipart/form-data POST request with a single .csv file
- * - Stores the uploaded file into the input folder
+ * - POST /v1/records/stream takes the CSV as the raw request body, without multipart buffering
+ * - Stores the uploaded file into the input folder through the {@link UploadStore}, which only makes
+ *   it visible to the watcher once complete and enforces {@code app.upload.max-size}
  * - The actual parsing and processing is handled asynchronously by FileWatcherService
+ * - Uploads are refused with 429 and a Retry-After header while the {@link IngestionQueue} is full
+ *   (see QueueController for its current depth), and with 409 while a file of the same name is being processed
+ * - Each upload is registered as a job; the Location header points to its status (see JobController)
+ * - Very large files can be uploaded in parts with {@link ResumableUploadController}
  * - Includes Swagger/OpenAPI annotations for API documentation
  */
 @RestController
@@ -35,8 +46,11 @@ public class UploadController {
 
     private static final Logger logger = LoggerFactory.getLogger(UploadController.class);
 
-    @Value("${app.input.folder}")
-    private String inputFolder;
+    private final UploadStore uploadStore;
+
+    public UploadController(UploadStore uploadStore) {
+        this.uploadStore = uploadStore;
+    }
 
     /**
      * Endpoint to receive course CSV uploads via REST API.
@@ -53,8 +67,11 @@ public class UploadController {
                       """
     )
     @ApiResponses({
-            @ApiResponse(responseCode = "202", description = "File accepted and queued for processing"),
+            @ApiResponse(responseCode = "202", description = "File accepted and queued for processing; Location points to the job status"),
             @ApiResponse(responseCode = "400", description = "Invalid file"),
+            @ApiResponse(responseCode = "409", description = "A file of the same name is being processed; retry once it is done"),
+            @ApiResponse(responseCode = "413", description = "File larger than app.upload.max-size"),
+            @ApiResponse(responseCode = "429", description = "Processing queue full; retry after the Retry-After seconds"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @RequestBody(
@@ -85,17 +102,74 @@ public class UploadController {
             return ResponseEntity.badRequest().body("Only CSV files (.csv) are allowed.");
         }
 
-        // Store file in input folder
+        try (InputStream in = file.getInputStream()) {
+            return accepted(uploadStore.store(originalFilename, in, file.getSize()));
+        } catch (IOException e) {
+            return failed(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Streams the request body straight into the input folder, for clients that do not need multipart.
+     */
+    @Operation(
+            summary = "Upload a CSV file as the request body",
+            description = "Send the CSV as the request body (Content-Type: text/csv), optionally with chunked transfer encoding. "
+                    + "The body is written to the input folder as it arrives and queued for processing once complete."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "File accepted and queued for processing; Location points to the job status"),
+            @ApiResponse(responseCode = "400", description = "Invalid file name"),
+            @ApiResponse(responseCode = "409", description = "A file of the same name is being processed; retry once it is done"),
+            @ApiResponse(responseCode = "413", description = "File larger than app.upload.max-size"),
+            @ApiResponse(responseCode = "429", description = "Processing queue full; retry after the Retry-After seconds"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(path = "/stream", consumes = {"text/csv", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<String> streamCsv(
+            InputStream body,
+            @Parameter(description = "Name of the CSV file", required = true)
+            @RequestParam String fileName,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength
+    ) {
+        if (!fileName.toLowerCase().endsWith(".csv")) {
+            logger.warn("Rejected file upload: {} is not a .csv", fileName);
+            return ResponseEntity.badRequest().body("Only CSV files (.csv) are allowed.");
+        }
         try {
-            Path targetPath = Paths.get(inputFolder).resolve(originalFilename);
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-            logger.info("Uploaded CSV saved to: {}", targetPath);
-            return ResponseEntity.status(HttpStatus.ACCEPTED)
-                    .body("CSV uploaded successfully and queued for processing.");
+            return accepted(uploadStore.store(fileName, body, contentLength == null ? -1 : contentLength));
         } catch (IOException e) {
-            logger.error("Error saving uploaded CSV: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to save the uploaded file.");
+            return failed(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    static ResponseEntity<String> accepted(ProcessingJob job) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/v1/records/jobs/" + job.getId()))
+                .body("CSV uploaded successfully and queued for processing.");
+    }
+
+    static ResponseEntity<String> failed(IOException e) {
+        if (e instanceof IngestionQueue.FullException full) {
+            logger.warn("Rejected file upload: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(full.getRetryAfterSeconds()))
+                    .body(e.getMessage());
+        }
+        if (e instanceof IngestionQueue.InFlightException) {
+            logger.warn("Rejected file upload: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+        if (e instanceof UploadStore.TooLargeException) {
+            logger.warn("Rejected file upload: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
         }
+        logger.error("Error saving uploaded CSV: {}", e.getMessage(), e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Failed to save the uploaded file.");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.example.SaarniLearningAssignment.dto;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/**
+ * Counters and current size of the result cache, as returned by the cache stats API.
+ * Counters start from zero when the application starts; entries and size include entries kept from earlier runs.
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class CacheStatsDTO {
+    private final boolean enabled;
+    private final int entries;
+    private final long sizeBytes;
+    private final long maxSizeBytes;
+    private final long hits;
+    private final long misses;
+    private final long stores;
+    private final long evictions;
+
+    public CacheStatsDTO(boolean enabled, int entries, long sizeBytes, long maxSizeBytes,
+                         long hits, long misses, long stores, long evictions) {
+        this.enabled = enabled;
+        this.entries = entries;
+        this.sizeBytes = sizeBytes;
+        this.maxSizeBytes = maxSizeBytes;
+        this.hits = hits;
+        this.misses = misses;
+        this.stores = stores;
+        this.evictions = evictions;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
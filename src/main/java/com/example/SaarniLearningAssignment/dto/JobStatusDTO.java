@@ -0,0 +1,110 @@
+package com.example.SaarniLearningAssignment.dto;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of a processing job, as returned by the job status API.
+ * Counts, timings and the output folder are null until the corresponding step has run.
+ * {@code cache_hit} is true when the outputs of an identical earlier file were reused instead of parsing.
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class JobStatusDTO {
+    private final String id;
+    private final String fileName;
+    private final String state;
+    private final Instant createdAt;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final Long queueMillis;
+    private final Long parseMillis;
+    private final Long writeMillis;
+    private final Integer rows;
+    private final Integer validRows;
+    private final Integer records;
+    private final String outputFolder;
+    private final boolean cacheHit;
+    private final String error;
+
+    public JobStatusDTO(String id, String fileName, String state, Instant createdAt, Instant startedAt,
+                        Instant finishedAt, Long queueMillis, Long parseMillis, Long writeMillis,
+                        Integer rows, Integer validRows, Integer records, String outputFolder, boolean cacheHit, String error) {
+        this.id = id;
+        this.fileName = fileName;
+        this.state = state;
+        this.createdAt = createdAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.queueMillis = queueMillis;
+        this.parseMillis = parseMillis;
+        this.writeMillis = writeMillis;
+        this.rows = rows;
+        this.validRows = validRows;
+        this.records = records;
+        this.outputFolder = outputFolder;
+        this.cacheHit = cacheHit;
+        this.error = error;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Long getQueueMillis() {
+        return queueMillis;
+    }
+
+    public Long getParseMillis() {
+        return parseMillis;
+    }
+
+    public Long getWriteMillis() {
+        return writeMillis;
+    }
+
+    public Integer getRows() {
+        return rows;
+    }
+
+    public Integer getValidRows() {
+        return validRows;
+    }
+
+    public Integer getRecords() {
+        return records;
+    }
+
+    public String getOutputFolder() {
+        return outputFolder;
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
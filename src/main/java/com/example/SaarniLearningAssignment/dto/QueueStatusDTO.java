@@ -0,0 +1,65 @@
+package com.example.SaarniLearningAssignment.dto;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/**
+ * Snapshot of the ingestion queue, as returned by the queue status API.
+ * Uploads are refused with 429 while depth is at or above capacity; retry_after_seconds is then
+ * the suggested wait, and 0 otherwise.
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class QueueStatusDTO {
+    private final int depth;
+    private final int capacity;
+    private final int waiting;
+    private final int uploading;
+    private final int processing;
+    private final long oldestWaitMillis;
+    private final long retryAfterSeconds;
+    private final String order;
+
+    public QueueStatusDTO(int depth, int capacity, int waiting, int uploading, int processing,
+                          long oldestWaitMillis, long retryAfterSeconds, String order) {
+        this.depth = depth;
+        this.capacity = capacity;
+        this.waiting = waiting;
+        this.uploading = uploading;
+        this.processing = processing;
+        this.oldestWaitMillis = oldestWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.order = order;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public int getUploading() {
+        return uploading;
+    }
+
+    public int getProcessing() {
+        return processing;
+    }
+
+    public long getOldestWaitMillis() {
+        return oldestWaitMillis;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public String getOrder() {
+        return order;
+    }
+}
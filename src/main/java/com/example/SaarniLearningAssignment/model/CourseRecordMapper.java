@@ -0,0 +1,181 @@
+package com.example.SaarniLearningAssignment.model;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Maps CSV rows to {@link CourseRecord}s using column indexes resolved once per file.
+ *
+ * Looking up nine columns by header name on every row is the hottest code in the pipeline,
+ * so the header map is resolved up front and each row is read by index. Status values are
+ * normalized to shared constants, dates go through a per-file {@link IsoDateParser}, repeated
+ * text values are shared through a {@link StringPool}, and row diagnostics are only rendered
+ * when a row is rejected.
+ *
+ * Instances are cheap but not thread-safe; create one per parser.
+ */
+public class CourseRecordMapper {
+
+    public static final String FIRST_NAME = "Etunimi";
+    public static final String LAST_NAME = "Sukunimi";
+    public static final String EMAIL = "E-mail";
+    public static final String COURSE_NAME = "Kurssin nimi";
+    public static final String START_DATE = "Kurssi alkaa";
+    public static final String END_DATE = "Kurssi päättyy";
+    public static final String STATUS = "Status";
+    public static final String GRADE = "Arvosana";
+    public static final String COMPLETION_DATE = "Kurssin suorituspäivämäärä";
+
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_INPROGRESS = "inprogress";
+
+    private final Map<String, Integer> headerMap;
+    private final int firstName;
+    private final int lastName;
+    private final int email;
+    private final int courseName;
+    private final int startDate;
+    private final int endDate;
+    private final int status;
+    private final int grade;
+    private final int completionDate;
+
+    private final IsoDateParser dates = new IsoDateParser();
+    private final StringPool strings;
+
+    private CourseRecordMapper(Map<String, Integer> headerMap, StringPool strings) {
+        this.headerMap = headerMap;
+        this.strings = strings;
+        this.firstName = indexOf(FIRST_NAME);
+        this.lastName = indexOf(LAST_NAME);
+        this.email = indexOf(EMAIL);
+        this.courseName = indexOf(COURSE_NAME);
+        this.startDate = indexOf(START_DATE);
+        this.endDate = indexOf(END_DATE);
+        this.status = indexOf(STATUS);
+        this.grade = indexOf(GRADE);
+        this.completionDate = indexOf(COMPLETION_DATE);
+    }
+
+    /**
+     * Resolves the column indexes from a parser's header map.
+     * Missing columns are not an error here; every row is rejected instead, as with lookups by name.
+     */
+    public static CourseRecordMapper forHeader(Map<String, Integer> headerMap) {
+        return new CourseRecordMapper(headerMap, new StringPool());
+    }
+
+    /**
+     * Resolves the column indexes and canonicalizes names, emails and course names through the given pool.
+     */
+    public static CourseRecordMapper forHeader(Map<String, Integer> headerMap, StringPool strings) {
+        return new CourseRecordMapper(headerMap, strings);
+    }
+
+    /**
+     * Parses a single CSVRecord and maps it to a CourseRecord object.
+     *
+     * This method:
+     * - Reads values from the CSV by resolved column index
+     * - Converts and validates fields (dates, grade, status)
+     * - Ensures that required fields are present and logically valid
+     * - Allows missing completionDate only for non-completed statuses
+     *
+     * @param record a row from a parsed CSV file
+     * @return a fully initialized CourseRecord object
+     * @throws InvalidRowException if any required or invalid field is found
+     */
+    public CourseRecord map(CSVRecord record) {
+        return map(record, null);
+    }
+
+    /**
+     * Same as {@link #map(CSVRecord)}, but fills the given record instead of creating one, for callers
+     * that only copy values out of the result before mapping the next row. The target is left
+     * unchanged when the row is invalid.
+     *
+     * @param target the record to fill, or null to create a new one
+     */
+    public CourseRecord map(CSVRecord record, CourseRecord target) {
+        try {
+
+            // Required textual fields (trimmed to remove leading/trailing whitespace)
+            String firstName = get(record, this.firstName, FIRST_NAME).trim();
+            String lastName = get(record, this.lastName, LAST_NAME).trim();
+            String email = get(record, this.email, EMAIL).trim();
+            String courseName = get(record, this.courseName, COURSE_NAME).trim();
+
+            // Required dates: start and end of the course
+            LocalDate startDate = dates.parse(get(record, this.startDate, START_DATE));
+            LocalDate endDate = dates.parse(get(record, this.endDate, END_DATE));
+
+            // Status field normalized to a shared lowercase constant
+            String status = normalizeStatus(get(record, this.status, STATUS).trim());
+
+            // Grade field: optional (can be empty)
+            String gradeStr = get(record, this.grade, GRADE).trim();
+            Integer grade = gradeStr.isBlank() ? null : Integer.valueOf(gradeStr);
+
+            // Completion date field: optional for non-completed statuses
+            String dateStr = get(record, this.completionDate, COMPLETION_DATE).trim();
+            LocalDate completionDate = (dateStr.isEmpty()) ? null : dates.parse(dateStr);
+
+            // Logical rule: completionDate is required for "completed" records
+            boolean isInprogress = STATUS_INPROGRESS.equals(status);
+
+            if (firstName.isEmpty() || lastName.isEmpty() || email.isEmpty() || courseName.isEmpty()
+                    || status.isEmpty() || startDate == null || endDate == null || (!isInprogress && completionDate == null)) {
+                throw new InvalidRowException(RejectReason.MISSING_FIELDS, "Missing required fields");
+            }
+
+            if (target == null) {
+                return new CourseRecord(strings.canonicalize(firstName), strings.canonicalize(lastName),
+                        strings.canonicalize(email), strings.canonicalize(courseName),
+                        startDate, endDate, status, grade, completionDate);
+            }
+            target.setFirstName(strings.canonicalize(firstName));
+            target.setLastName(strings.canonicalize(lastName));
+            target.setEmail(strings.canonicalize(email));
+            target.setCourseName(strings.canonicalize(courseName));
+            target.setStartDate(startDate);
+            target.setEndDate(endDate);
+            target.setStatus(status);
+            target.setGrade(grade);
+            target.setCompletionDate(completionDate);
+            return target;
+
+        } catch (Exception e) {
+            RejectReason reason = e instanceof InvalidRowException invalid ? invalid.getReason() : RejectReason.PARSE_ERROR;
+            throw new InvalidRowException(reason, "Invalid CSV row: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the shared constant for known statuses without allocating; other values are lowercased.
+     */
+    static String normalizeStatus(String status) {
+        if (STATUS_COMPLETED.equalsIgnoreCase(status)) return STATUS_COMPLETED;
+        if (STATUS_FAILED.equalsIgnoreCase(status)) return STATUS_FAILED;
+        if (STATUS_INPROGRESS.equalsIgnoreCase(status)) return STATUS_INPROGRESS;
+        return status.toLowerCase();
+    }
+
+    private int indexOf(String column) {
+        Integer index = headerMap.get(column);
+        return index == null ? -1 : index;
+    }
+
+    private String get(CSVRecord record, int index, String column) {
+        if (index < 0) {
+            throw new IllegalArgumentException(String.format("Mapping for %s not found, expected one of %s", column, headerMap.keySet()));
+        }
+        if (index >= record.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Index for header '%s' is %d but CSVRecord only has %d values!", column, index, record.size()));
+        }
+        return record.get(index);
+    }
+}
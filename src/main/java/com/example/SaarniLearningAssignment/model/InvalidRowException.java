@@ -0,0 +1,18 @@
+package com.example.SaarniLearningAssignment.model;
+
+/**
+ * Thrown by {@link CourseRecordMapper} for a row that cannot be turned into a {@link CourseRecord}.
+ */
+public class InvalidRowException extends IllegalArgumentException {
+
+    private final RejectReason reason;
+
+    public InvalidRowException(RejectReason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public RejectReason getReason() {
+        return reason;
+    }
+}
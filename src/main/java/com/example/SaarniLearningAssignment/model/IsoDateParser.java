@@ -0,0 +1,72 @@
+package com.example.SaarniLearningAssignment.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Fast parser for the {@code yyyy-MM-dd} dates used in the course CSV files.
+ *
+ * - Plain ten-character dates are decoded directly from their digits
+ * - Anything else falls back to {@link DateTimeFormatter#ISO_DATE}, so exactly the same
+ *   inputs are accepted and rejected as before
+ * - A small direct-mapped cache returns the same {@link LocalDate} for repeated strings,
+ *   since start and end dates repeat on every row of a course
+ *
+ * Not thread-safe; use one instance per file or chunk.
+ */
+public class IsoDateParser {
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_DATE;
+
+    private static final int CACHE_SIZE = 256;
+
+    private final String[] cachedText = new String[CACHE_SIZE];
+    private final LocalDate[] cachedDate = new LocalDate[CACHE_SIZE];
+
+    /**
+     * Parses a date string.
+     *
+     * @throws java.time.DateTimeException if the text is not a valid ISO date
+     */
+    public LocalDate parse(String text) {
+        int slot = text.hashCode() & (CACHE_SIZE - 1);
+        String cached = cachedText[slot];
+        if (cached != null && cached.equals(text)) {
+            return cachedDate[slot];
+        }
+
+        LocalDate date = isPlainDate(text) ? parsePlainDate(text) : LocalDate.parse(text, formatter);
+        cachedText[slot] = text;
+        cachedDate[slot] = date;
+        return date;
+    }
+
+    private static boolean isPlainDate(String text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (i == 4 || i == 7) continue;
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a date already known to have the {@code dddd-dd-dd} shape.
+     * {@link LocalDate#of} rejects out-of-range months and days just like the strict ISO formatter.
+     */
+    private static LocalDate parsePlainDate(String text) {
+        int year = digit(text, 0) * 1000 + digit(text, 1) * 100 + digit(text, 2) * 10 + digit(text, 3);
+        int month = digit(text, 5) * 10 + digit(text, 6);
+        int day = digit(text, 8) * 10 + digit(text, 9);
+        return LocalDate.of(year, month, day);
+    }
+
+    private static int digit(String text, int index) {
+        return text.charAt(index) - '0';
+    }
+}
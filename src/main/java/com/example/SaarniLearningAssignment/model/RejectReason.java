@@ -0,0 +1,19 @@
+package com.example.SaarniLearningAssignment.model;
+
+/**
+ * Why a CSV row was skipped, as counted by the pipeline metrics.
+ */
+public enum RejectReason {
+    /**
+     * A value could not be read or converted (unknown column, bad date or grade, too few values)
+     */
+    PARSE_ERROR,
+    /**
+     * A required value is empty, or a completed/failed row has no completion date
+     */
+    MISSING_FIELDS,
+    /**
+     * The completion date lies outside the course start and end dates
+     */
+    DATE_OUT_OF_RANGE
+}
@@ -0,0 +1,47 @@
+package com.example.SaarniLearningAssignment.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-run symbol table that canonicalizes repeated field values.
+ *
+ * Course names, and to a lesser degree names and emails, repeat on many rows. Returning the
+ * first instance seen for each value lets all records share one copy instead of holding their own.
+ *
+ * A pool can be given a maximum size, after which new values are returned as they are, so its memory
+ * stays bounded on files with very many distinct values.
+ *
+ * Not thread-safe; use one pool per parser.
+ */
+public class StringPool {
+
+    private final Map<String, String> values = new HashMap<>();
+    private final int maxSize;
+
+    public StringPool() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public StringPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the canonical instance equal to the given value.
+     */
+    public String canonicalize(String value) {
+        if (values.size() >= maxSize) {
+            return values.getOrDefault(value, value);
+        }
+        String existing = values.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Number of distinct values held by the pool.
+     */
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.SaarniLearningAssignment.model;
+
+/**
+ * Composite deduplication key of a user (email) and a course name.
+ *
+ * Replaces the {@code email + "|" + courseName} string built for every row. The hash code is
+ * computed to be equal to the hash of that concatenated string, so hash maps keyed by this class
+ * keep the same iteration order, and therefore the same output order, as before.
+ */
+public final class UserCourseKey {
+
+    private final String email;
+    private final String courseName;
+    private final int hash;
+
+    public UserCourseKey(String email, String courseName) {
+        this.email = email;
+        this.courseName = courseName;
+        this.hash = hashOf(email, courseName);
+    }
+
+    public static UserCourseKey of(CourseRecord record) {
+        return new UserCourseKey(record.getEmail(), record.getCourseName());
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getCourseName() {
+        return courseName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UserCourseKey other)) return false;
+        return hash == other.hash && email.equals(other.email) && courseName.equals(other.courseName);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return email + "|" + courseName;
+    }
+
+    /**
+     * String hash of {@code email + "|" + courseName} without building the string:
+     * h(a + b) = h(a) * 31^len(b) + h(b).
+     */
+    public static int hashOf(String email, String courseName) {
+        int length = courseName.length();
+        return (email.hashCode() * pow31(length + 1)) + ('|' * pow31(length)) + courseName.hashCode();
+    }
+
+    private static int pow31(int exponent) {
+        int result = 1;
+        int base = 31;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) result *= base;
+            base *= base;
+            exponent >>= 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,463 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.ResultDTO;
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.example.SaarniLearningAssignment.model.UserCourseKey;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Compact columnar storage of deduplicated course records.
+ *
+ * Instead of one object graph per record (record, three dates, boxed grade, four strings,
+ * hash map entry and key), each winning attempt is a row of primitive columns:
+ * - The user (email, first and last name) and the course offering (course, start and end date)
+ *   are dictionary-encoded to {@code int} ids; a school has far fewer of each than attempts
+ * - The completion date is stored as an epoch day in an {@code int} column
+ * - Status and grade are stored as bytes
+ * - The user+course index is an open-addressing table of row numbers, compared against the id columns
+ *
+ * That is about 14 bytes per row plus the index, against well over a hundred for the record graph.
+ *
+ * Deduplication happens on the columns while rows are offered, with the same rule as
+ * {@link RecordDeduplicator}, and batches of several chunks are merged column to column. Summaries
+ * ({@link #summarizeInto}) and result entries ({@link #results()}) are read straight from the columns.
+ * The batch is also a read-only {@code List<CourseRecord>} whose elements are materialized on access,
+ * in the same order as {@link RecordDeduplicator#records()} would return them, so the rest of the
+ * pipeline works on either representation.
+ *
+ * Dates beyond roughly five million years from the epoch do not fit an {@code int} column and are rejected.
+ *
+ * Offering rows is single-threaded; once all rows are in, the batch can be read from several threads.
+ */
+public class CourseRecordBatch extends AbstractList<CourseRecord>
+        implements MergeableDeduplicationState<CourseRecordBatch>, RandomAccess {
+
+    private static final byte NO_GRADE = Byte.MIN_VALUE;
+    private static final byte LARGE_GRADE = Byte.MAX_VALUE;
+
+    private final Dictionary courses = new Dictionary();
+    private final Dictionary emails = new Dictionary();
+    private final Dictionary names = new Dictionary();
+    private final Dictionary statuses = new Dictionary();
+    private final TripleDictionary users = new TripleDictionary();      // email, first name, last name ids
+    private final TripleDictionary offerings = new TripleDictionary();  // course id, start day, end day
+    private final Map<Integer, Integer> largeGrades = new HashMap<>();
+    private final Map<Integer, LocalDate> dateCache = new ConcurrentHashMap<>();
+
+    private int rows;
+    private int[] userId = new int[1024];
+    private int[] offeringId = new int[1024];
+    private int[] completionDay = new int[1024];
+    private byte[] status = new byte[1024];
+    private byte[] grade = new byte[1024];
+
+    private int[] rowIndex = new int[2048]; // row + 1 per slot, 0 = empty
+    private volatile int[] order;
+
+    /**
+     * Only the values are copied, so the caller may reuse one record object for every row.
+     */
+    @Override
+    public boolean copiesOffered() {
+        return true;
+    }
+
+    @Override
+    public boolean offer(CourseRecord record) {
+        int email = emails.idOf(record.getEmail());
+        int course = courses.idOf(record.getCourseName());
+        int completion = epochDay(record.getCompletionDate());
+        byte statusCode = statusCode(record.getStatus());
+
+        int slot = claimSlot(email, course, completion, statusCode);
+        if (slot < 0) {
+            return false;
+        }
+        // Encode everything that can fail before touching the columns
+        int offering = offerings.idOf(course, epochDay(record.getStartDate()), epochDay(record.getEndDate()));
+        int user = users.idOf(email, names.idOf(record.getFirstName()), names.idOf(record.getLastName()));
+        store(slot, user, offering, completion, statusCode, record.getGrade());
+        return true;
+    }
+
+    /**
+     * Offers the rows of a batch built from a later part of the same input, in their original order.
+     * Dictionary ids of the other batch are translated once each, so no records are created.
+     */
+    @Override
+    public int mergeFrom(CourseRecordBatch other) {
+        int[] userMap = unmapped(other.users.size());
+        int[] offeringMap = unmapped(other.offerings.size());
+        byte[] statusMap = new byte[other.statuses.size()];
+        for (int id = 0; id < statusMap.length; id++) {
+            statusMap[id] = statusCode(other.statuses.value(id));
+        }
+
+        int stored = 0;
+        for (int row = 0; row < other.rows; row++) {
+            int otherUser = other.userId[row];
+            int otherOffering = other.offeringId[row];
+            int user = userMap[otherUser];
+            int offering = offeringMap[otherOffering];
+            int email = user >= 0 ? users.first(user) : emails.idOf(other.emails.value(other.users.first(otherUser)));
+            int course = offering >= 0 ? offerings.first(offering)
+                    : courses.idOf(other.courses.value(other.offerings.first(otherOffering)));
+            int completion = other.completionDay[row];
+            byte statusCode = statusMap[other.status[row]];
+
+            int slot = claimSlot(email, course, completion, statusCode);
+            if (slot < 0) {
+                continue;
+            }
+            if (user < 0) {
+                user = userMap[otherUser] = users.idOf(email,
+                        names.idOf(other.names.value(other.users.second(otherUser))),
+                        names.idOf(other.names.value(other.users.third(otherUser))));
+            }
+            if (offering < 0) {
+                offering = offeringMap[otherOffering] = offerings.idOf(course,
+                        other.offerings.second(otherOffering), other.offerings.third(otherOffering));
+            }
+            store(slot, user, offering, completion, statusCode, other.grade(row));
+            stored++;
+        }
+        return stored;
+    }
+
+    @Override
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * The batch itself is the list of deduplicated records.
+     */
+    @Override
+    public List<CourseRecord> records() {
+        return this;
+    }
+
+    @Override
+    public CourseRecord get(int index) {
+        return recordAt(order()[index]);
+    }
+
+    /**
+     * Materializes a row; rows are numbered in the order their user+course was first seen.
+     */
+    CourseRecord recordAt(int row) {
+        int user = userId[row];
+        int offering = offeringId[row];
+        return new CourseRecord(names.value(users.second(user)), names.value(users.third(user)),
+                emails.value(users.first(user)), courses.value(offerings.first(offering)),
+                date(offerings.second(offering)), date(offerings.third(offering)), statuses.value(status[row]),
+                grade(row), date(completionDay[row]));
+    }
+
+    /**
+     * Feeds every row to the aggregator straight from the columns, without creating records.
+     */
+    void summarizeInto(SummaryAggregator aggregator) {
+        for (int row : order()) {
+            int user = userId[row];
+            int offering = offeringId[row];
+            aggregator.accept(courses.value(offerings.first(offering)),
+                    date(offerings.second(offering)), date(offerings.third(offering)),
+                    emails.value(users.first(user)), names.value(users.second(user)), names.value(users.third(user)),
+                    statuses.value(status[row]), grade(row), date(completionDay[row]));
+        }
+    }
+
+    /**
+     * The result entries (completed and failed attempts) in list order, straight from the columns.
+     */
+    Stream<ResultDTO> results() {
+        return Arrays.stream(order())
+                .filter(row -> SummaryAggregator.isResult(statuses.value(status[row])))
+                .mapToObj(row -> new ResultDTO(courses.value(offerings.first(offeringId[row])),
+                        emails.value(users.first(userId[row])), statuses.value(status[row]),
+                        grade(row), date(completionDay[row])));
+    }
+
+    /**
+     * Returns the index slot where an attempt with the given date and status is to be stored,
+     * or -1 when the attempt already stored for the user+course wins.
+     */
+    private int claimSlot(int email, int course, int completion, byte statusCode) {
+        int slot = findSlot(email, course);
+        int row = rowIndex[slot] - 1;
+        if (row >= 0 && !RecordDeduplicator.supersedes(completion, statuses.value(statusCode),
+                completionDay[row], statuses.value(status[row]))) {
+            return -1;
+        }
+        return slot;
+    }
+
+    private void store(int slot, int user, int offering, int completion, byte statusCode, Integer gradeValue) {
+        int row = rowIndex[slot] - 1;
+        boolean added = row < 0;
+        if (added) {
+            row = rows++;
+            ensureCapacity(rows);
+            rowIndex[slot] = row + 1;
+        }
+        userId[row] = user;
+        offeringId[row] = offering;
+        completionDay[row] = completion;
+        status[row] = statusCode;
+        setGrade(row, gradeValue);
+        if (added && rows > rowIndex.length / 4 * 3) {
+            rehashRows();
+        }
+        order = null;
+    }
+
+    /**
+     * Row indexes in the iteration order of a {@code HashMap<UserCourseKey, ?>} holding the same keys:
+     * ascending bucket index for the final table size, then insertion (first-seen) order within a bucket.
+     * Rows are stored in first-seen order, so a stable sort by bucket reproduces it exactly.
+     */
+    private int[] order() {
+        int[] cached = order;
+        if (cached != null) {
+            return cached;
+        }
+        int tableSize = 16;
+        while (rows > tableSize * 3 / 4) {
+            tableSize <<= 1;
+        }
+        long[] sortKeys = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            int h = UserCourseKey.hashOf(emails.value(users.first(userId[row])),
+                    courses.value(offerings.first(offeringId[row])));
+            int bucket = (h ^ (h >>> 16)) & (tableSize - 1);
+            sortKeys[row] = ((long) bucket << 32) | row;
+        }
+        Arrays.sort(sortKeys);
+        int[] result = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            result[i] = (int) sortKeys[i];
+        }
+        order = result;
+        return result;
+    }
+
+    /**
+     * Returns the index slot holding the row for the user+course, or the empty slot where it belongs.
+     */
+    private int findSlot(int email, int course) {
+        int mask = rowIndex.length - 1;
+        int slot = mix(email * 31 + course) & mask;
+        while (true) {
+            int row = rowIndex[slot] - 1;
+            if (row < 0 || (users.first(userId[row]) == email && offerings.first(offeringId[row]) == course)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehashRows() {
+        rowIndex = new int[rowIndex.length * 2];
+        for (int row = 0; row < rows; row++) {
+            rowIndex[findSlot(users.first(userId[row]), offerings.first(offeringId[row]))] = row + 1;
+        }
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] unmapped(int size) {
+        int[] map = new int[size];
+        Arrays.fill(map, -1);
+        return map;
+    }
+
+    private byte statusCode(String value) {
+        int id = statuses.idOf(value);
+        if (id > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many distinct status values for columnar storage");
+        }
+        return (byte) id;
+    }
+
+    private void setGrade(int row, Integer value) {
+        largeGrades.remove(row);
+        if (value == null) {
+            grade[row] = NO_GRADE;
+        } else if (value > NO_GRADE && value < LARGE_GRADE) {
+            grade[row] = value.byteValue();
+        } else {
+            grade[row] = LARGE_GRADE;
+            largeGrades.put(row, value);
+        }
+    }
+
+    private Integer grade(int row) {
+        byte value = grade[row];
+        if (value == NO_GRADE) return null;
+        if (value == LARGE_GRADE) return largeGrades.get(row);
+        return (int) value;
+    }
+
+    private static int epochDay(LocalDate date) {
+        if (date == null) {
+            return RecordDeduplicator.NO_DATE;
+        }
+        long day = date.toEpochDay();
+        if (day <= Integer.MIN_VALUE || day > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Date out of range for columnar storage: " + date);
+        }
+        return (int) day;
+    }
+
+    private LocalDate date(int day) {
+        if (day == RecordDeduplicator.NO_DATE) {
+            return null;
+        }
+        return dateCache.computeIfAbsent(day, LocalDate::ofEpochDay);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= userId.length) {
+            return;
+        }
+        int capacity = Math.max(required, userId.length + (userId.length >> 1));
+        userId = Arrays.copyOf(userId, capacity);
+        offeringId = Arrays.copyOf(offeringId, capacity);
+        completionDay = Arrays.copyOf(completionDay, capacity);
+        status = Arrays.copyOf(status, capacity);
+        grade = Arrays.copyOf(grade, capacity);
+    }
+
+    /**
+     * Dictionary encoding of string values to dense int ids, backed by an open-addressing table of ids.
+     */
+    private static final class Dictionary {
+        private String[] values = new String[64];
+        private int[] table = new int[128]; // id + 1 per slot, 0 = empty
+        private int size;
+
+        int idOf(String value) {
+            int mask = table.length - 1;
+            int slot = mix(value.hashCode()) & mask;
+            while (true) {
+                int id = table[slot] - 1;
+                if (id < 0) {
+                    return add(value, slot);
+                }
+                if (values[id].equals(value)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        String value(int id) {
+            return values[id];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int add(String value, int slot) {
+            int id = size++;
+            if (id == values.length) {
+                values = Arrays.copyOf(values, id * 2);
+            }
+            values[id] = value;
+            table[slot] = id + 1;
+            if (size > table.length / 2) {
+                table = new int[table.length * 2];
+                int mask = table.length - 1;
+                for (int i = 0; i < size; i++) {
+                    int s = mix(values[i].hashCode()) & mask;
+                    while (table[s] != 0) {
+                        s = (s + 1) & mask;
+                    }
+                    table[s] = i + 1;
+                }
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Dictionary encoding of {@code int} triples to dense ids, the same way as {@link Dictionary}.
+     */
+    private static final class TripleDictionary {
+        private int[] values = new int[3 * 64]; // three ints per id
+        private int[] table = new int[128]; // id + 1 per slot, 0 = empty
+        private int size;
+
+        int idOf(int first, int second, int third) {
+            int mask = table.length - 1;
+            int slot = mix(hash(first, second, third)) & mask;
+            while (true) {
+                int id = table[slot] - 1;
+                if (id < 0) {
+                    return add(first, second, third, slot);
+                }
+                if (values[3 * id] == first && values[3 * id + 1] == second && values[3 * id + 2] == third) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        int first(int id) {
+            return values[3 * id];
+        }
+
+        int second(int id) {
+            return values[3 * id + 1];
+        }
+
+        int third(int id) {
+            return values[3 * id + 2];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static int hash(int first, int second, int third) {
+            return (first * 31 + second) * 31 + third;
+        }
+
+        private int add(int first, int second, int third, int slot) {
+            int id = size++;
+            if (3 * id == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[3 * id] = first;
+            values[3 * id + 1] = second;
+            values[3 * id + 2] = third;
+            table[slot] = id + 1;
+            if (size > table.length / 2) {
+                table = new int[table.length * 2];
+                int mask = table.length - 1;
+                for (int i = 0; i < size; i++) {
+                    int s = mix(hash(values[3 * i], values[3 * i + 1], values[3 * i + 2])) & mask;
+                    while (table[s] != 0) {
+                        s = (s + 1) & mask;
+                    }
+                    table[s] = i + 1;
+                }
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.SaarniLearningAssignment.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a CSV file into byte ranges that start and end on record boundaries.
+ *
+ * The file is scanned once with a small state machine that mirrors how commons-csv's
+ * default format tokenizes input:
+ * - A quote only opens an encapsulated field when it is the first character of the field
+ * - Inside an encapsulated field, doubled quotes are escaped quotes and newlines are data
+ * - Only a newline outside an encapsulated field ends a record
+ *
+ * UTF-8 multi-byte sequences never contain the quote, comma or newline bytes, so the
+ * scan can run on raw bytes without decoding.
+ *
+ * Records are counted on the way, skipping empty lines as commons-csv does, so each chunk knows the
+ * number of its first row in the file.
+ */
+public final class CsvChunkSplitter {
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private CsvChunkSplitter() {
+    }
+
+    /**
+     * A half-open byte range {@code [start, end)} of the file.
+     *
+     * @param rowOffset number of data records before the chunk, to add to record numbers within it
+     */
+    public record Chunk(int index, long start, long end, long rowOffset) {
+        public long length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Result of splitting a file: the byte range of the header record and the data chunks after it.
+     */
+    public record Split(long headerEnd, List<Chunk> chunks) {
+    }
+
+    /**
+     * Splits the file into chunks of roughly {@code targetChunkSize} bytes.
+     * The first record is treated as the header and is not part of any chunk.
+     */
+    public static Split split(FileChannel channel, long targetChunkSize) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        List<Chunk> chunks = new ArrayList<>();
+
+        int state = FIELD_START;
+        long headerEnd = -1;
+        long chunkStart = -1;
+        long position = 0;
+        long rows = 0;
+        long chunkRowOffset = 0;
+        boolean emptyLine = true;
+
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                boolean recordEnd = false;
+                if (b != '\n' && b != '\r') {
+                    emptyLine = false;
+                }
+                switch (state) {
+                    case FIELD_START -> {
+                        if (b == '"') state = QUOTED;
+                        else if (b == '\n') recordEnd = true;
+                        else if (b != ',' && b != '\r') state = UNQUOTED;
+                    }
+                    case UNQUOTED -> {
+                        if (b == ',' || b == '\r') state = FIELD_START;
+                        else if (b == '\n') {
+                            state = FIELD_START;
+                            recordEnd = true;
+                        }
+                    }
+                    case QUOTED -> {
+                        if (b == '"') state = QUOTE_IN_QUOTED;
+                    }
+                    case QUOTE_IN_QUOTED -> {
+                        if (b == '"') state = QUOTED;
+                        else if (b == ',' || b == '\r') state = FIELD_START;
+                        else if (b == '\n') {
+                            state = FIELD_START;
+                            recordEnd = true;
+                        } else state = UNQUOTED;
+                    }
+                    default -> throw new IllegalStateException("Unknown state " + state);
+                }
+
+                if (recordEnd) {
+                    long next = position + i + 1;
+                    if (headerEnd < 0) {
+                        headerEnd = next;
+                        chunkStart = next;
+                    } else {
+                        if (!emptyLine) {
+                            rows++;
+                        }
+                        if (next - chunkStart >= targetChunkSize) {
+                            chunks.add(new Chunk(chunks.size(), chunkStart, next, chunkRowOffset));
+                            chunkStart = next;
+                            chunkRowOffset = rows;
+                        }
+                    }
+                    emptyLine = true;
+                }
+            }
+            position += read;
+        }
+
+        if (headerEnd < 0) {
+            // Header only, without a trailing newline
+            return new Split(size, chunks);
+        }
+        if (chunkStart < size) {
+            chunks.add(new Chunk(chunks.size(), chunkStart, size, chunkRowOffset));
+        }
+        return new Split(headerEnd, chunks);
+    }
+}
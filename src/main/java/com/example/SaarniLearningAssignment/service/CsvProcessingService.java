@@ -4,8 +4,13 @@ import com.example.SaarniLearningAssignment.dto.CourseDTO;
 import com.example.SaarniLearningAssignment.dto.ResultDTO;
 import com.example.SaarniLearningAssignment.dto.UserDTO;
 import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.example.SaarniLearningAssignment.model.CourseRecordMapper;
+import com.example.SaarniLearningAssignment.model.InvalidRowException;
+import com.example.SaarniLearningAssignment.model.RejectReason;
+import com.example.SaarniLearningAssignment.model.StringPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Service;
 
@@ -13,10 +18,27 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
-import java.util.*;import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Service for reading, validating, deduplicating, and summarizing CSV course data.
@@ -26,83 +48,397 @@ import java.util.*;import java.util.stream.Collectors;
  * - Filtering out invalid or logically inconsistent records
  * - Deduplicating records so only the most recent per user+course is kept
  * - Generating summaries for output (courses, users, results)
+ *
+ * Stage times, row counts and rejections are reported to {@link PipelineMetrics}.
  */
 @Service
 @EnableScheduling
 public class CsvProcessingService {
     private static final Logger logger = LoggerFactory.getLogger(CsvProcessingService.class);
 
+    // Column names from the first record, which is not returned as data
+    private static final CSVFormat HEADER_FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .build();
+
+    @Value("${app.csv.parallel.enabled}")
+    private boolean parallelEnabled;
+    @Value("${app.csv.parallel.min-file-size}")
+    private long parallelMinFileSize;
+    @Value("${app.csv.parallel.chunk-size}")
+    private long parallelChunkSize;
+    @Value("${app.csv.parallel.threads}")
+    private int parallelThreads;
+    @Value("${app.csv.columnar}")
+    private boolean columnar;
+    @Value("${app.dedup.spill.enabled}")
+    private boolean spillEnabled;
+    @Value("${app.dedup.spill.folder}")
+    private String spillFolder;
+    @Value("${app.dedup.spill.memory-threshold}")
+    private long spillThreshold;
+    @Value("${app.dedup.spill.partitions}")
+    private int spillPartitions;
+
+    private final PipelineMetrics metrics;
+    private volatile ForkJoinPool parsePool;
+
+    public CsvProcessingService(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Reads the CSV stream, parses it into CourseRecord objects, filters invalid entries,
      * and returns a deduplicated list.
+     *
+     * Rows are pulled from the parser one at a time and fed straight into the deduplication
+     * state, so peak memory grows with the number of distinct user+course keys rather than
+     * the number of rows in the file.
+     *
+     * The stream is decoded as strict UTF-8; a leading byte order mark is skipped. With
+     * {@code app.dedup.spill.enabled} deduplication moves to disk past the threshold, and the returned
+     * list is then {@link java.io.Closeable} and should be closed when no longer needed.
      */
     public List<CourseRecord> parseAndFilter(InputStream is) {
-        List<CourseRecord> validRecords = new ArrayList<>();
-        try (CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(new InputStreamReader(is))) {
-            List<CSVRecord> csvRecords = parser.getRecords();
-            if (csvRecords.isEmpty()) {
-                throw new IllegalArgumentException("CSV file is empty or only contains header");
+        return parseAndFilter(is, stats -> {});
+    }
+
+    /**
+     * Same as {@link #parseAndFilter(InputStream)}, reporting row counts to the given listener on success.
+     */
+    public List<CourseRecord> parseAndFilter(InputStream is, Consumer<ParseStats> statsListener) {
+        Reader reader;
+        try {
+            reader = utf8Reader(is);
+        } catch (IOException e) {
+            logger.error("Failed to parse CSV", e);
+            throw new RuntimeException("Failed to parse CSV", e);
+        }
+        return parseReader(reader, statsListener);
+    }
+
+    /**
+     * Parses a CSV file from disk. Large files are split into chunks on record boundaries
+     * and parsed in parallel; smaller files use the sequential streaming path.
+     *
+     * Both paths return the same records in the same order. The file is read through
+     * {@link FileRangeReader}s (strict UTF-8, byte order mark skipped), and the throughput is logged.
+     */
+    public List<CourseRecord> parseAndFilter(Path file) throws IOException {
+        return parseAndFilter(file, stats -> {});
+    }
+
+    /**
+     * Same as {@link #parseAndFilter(Path)}, reporting row counts to the given listener on success.
+     */
+    public List<CourseRecord> parseAndFilter(Path file, Consumer<ParseStats> statsListener) throws IOException {
+        return parseAndFilter(file, false, statsListener);
+    }
+
+    /**
+     * Same as {@link #parseAndFilter(Path, Consumer)}. With {@code lowMemory} the file is parsed
+     * sequentially whatever the parallel and columnar settings, for files that do not fit the
+     * {@link MemoryBudget} otherwise; the records are the same.
+     *
+     * - With {@code app.dedup.spill.enabled}, a file parsed sequentially (low-memory mode, or below the
+     *   parallel size) moves deduplication to disk past {@code app.dedup.spill.memory-threshold}
+     *   (see {@link SpillingDeduplicator}); the returned list is then {@link java.io.Closeable} and should
+     *   be closed when no longer needed
+     * - Otherwise the low-memory mode keeps the records in a {@link CourseRecordBatch}
+     * - Files parsed in parallel keep deduplication in memory; the budget only admits them when they fit
+     */
+    public List<CourseRecord> parseAndFilter(Path file, boolean lowMemory, Consumer<ParseStats> statsListener) throws IOException {
+        long start = System.nanoTime();
+        long size;
+        List<CourseRecord> records;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (lowMemory && !spillEnabled) {
+                records = parseStream(new FileRangeReader(channel, 0, size), CourseRecordBatch::new, statsListener);
+            } else if (lowMemory || !parallelEnabled || size < parallelMinFileSize) {
+                records = parseReader(new FileRangeReader(channel, 0, size), statsListener);
+            } else {
+                records = columnar
+                        ? parseParallel(file, channel, CourseRecordBatch::new, statsListener)
+                        : parseParallel(file, channel, RecordDeduplicator::new, statsListener);
             }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        metrics.bytesRead(size);
+        logger.info("Parsed {} ({} MB) in {} s, {} MB/s", file.getFileName(), String.format("%.1f", size / 1e6),
+                String.format("%.2f", seconds), String.format("%.1f", size / 1e6 / Math.max(seconds, 1e-9)));
+        return records;
+    }
 
-            for (CSVRecord record : csvRecords) {
+    /**
+     * Sequential parse; with spilling enabled, deduplication moves to disk past the threshold whatever
+     * the columnar setting.
+     */
+    private List<CourseRecord> parseReader(Reader reader, Consumer<ParseStats> statsListener) {
+        if (spillEnabled) {
+            return parseStream(reader,
+                    () -> new SpillingDeduplicator(Paths.get(spillFolder), spillPartitions, spillThreshold), statsListener);
+        }
+        return columnar
+                ? parseStream(reader, CourseRecordBatch::new, statsListener)
+                : parseStream(reader, RecordDeduplicator::new, statsListener);
+    }
 
-                try {
-                    CourseRecord courseRecord = CourseRecord.fromCsv(record);
+    /**
+     * Decodes the stream as strict UTF-8, without a leading byte order mark.
+     */
+    private static Reader utf8Reader(InputStream is) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(is, 3);
+        byte[] head = in.readNBytes(3);
+        boolean bom = head.length == 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF;
+        if (!bom) {
+            in.unread(head);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder());
+    }
 
-                    // Skip if completion date is outside course duration (only if provided)
-                    LocalDate completion = courseRecord.getCompletionDate();
-                    if (completion != null &&
-                            (completion.isBefore(courseRecord.getStartDate()) || completion.isAfter(courseRecord.getEndDate()))) {
-                        logger.warn("Skipping record outside course date range: {}", record);
-                        continue;
-                    }
-                    validRecords.add(courseRecord);
-                    logger.debug("Accepted record: {} | {} | {}", courseRecord.getEmail(), courseRecord.getCourseName(), courseRecord.getStatus());
-                } catch (Exception e) {
-                    logger.warn("Skipping invalid row: {} | Reason: {}", record.toString(), e.getMessage());
+    private <S extends DeduplicationState> List<CourseRecord> parseStream(Reader reader, Supplier<S> stateFactory,
+                                                                         Consumer<ParseStats> statsListener) {
+        S deduplicator = stateFactory.get();
+        ParseState<S> state;
+        List<CourseRecord> records;
+        try (CSVParser parser = HEADER_FORMAT.parse(reader)) {
+            state = parseRecords(parser, 0, deduplicator);
+            if (state.rowCount == 0) {
+                throw new IllegalArgumentException("CSV file is empty or only contains header");
+            }
+            records = deduplicator.records();
+        } catch (Exception e) {
+            if (deduplicator instanceof SpillingDeduplicator spilling) {
+                spilling.close();
+            }
+            logger.error("Failed to parse CSV", e);
+            throw new RuntimeException("Failed to parse CSV", e);
+        }
+        if (deduplicator instanceof SpillingDeduplicator spilling) {
+            // Rows spilled undecided were counted as stored
+            state.storedCount -= spilling.getLateDiscards();
+        }
 
-                }
+        logger.info("Parsed {} valid course records", state.validCount);
+        logger.info("Removed duplicates down to {} records", state.deduplicator.size());
+        metrics.recordParse(state.timings, state.validCount, state.replaced());
+        statsListener.accept(state.stats());
+        return records;
+    }
+
+    /**
+     * Splits the file into byte ranges aligned to record boundaries, parses and validates each
+     * range on the fork-join pool, and merges the per-chunk deduplication maps.
+     *
+     * Chunks are merged in file order, and the replacement rule only depends on completion date
+     * and status, so the result is identical to reading the file sequentially.
+     */
+    private <S extends MergeableDeduplicationState<S>> List<CourseRecord> parseParallel(Path file, FileChannel channel,
+                                                                                       Supplier<S> stateFactory,
+                                                                                       Consumer<ParseStats> statsListener) {
+        ParseState<S> merged = new ParseState<>(stateFactory.get());
+        try {
+            CsvChunkSplitter.Split split = CsvChunkSplitter.split(channel, parallelChunkSize);
+            CSVFormat chunkFormat = CSVFormat.DEFAULT.builder().setHeader(readHeader(channel, split.headerEnd())).build();
+            logger.info("Parsing {} in {} chunks", file.getFileName(), split.chunks().size());
+
+            List<Callable<ParseState<S>>> tasks = new ArrayList<>();
+            for (CsvChunkSplitter.Chunk chunk : split.chunks()) {
+                tasks.add(() -> {
+                    try (CSVParser parser = chunkFormat.parse(new FileRangeReader(channel, chunk.start(), chunk.end()))) {
+                        return parseRecords(parser, chunk.rowOffset(), stateFactory.get());
+                    }
+                });
+            }
 
+            for (Future<ParseState<S>> future : parsePool().invokeAll(tasks)) {
+                ParseState<S> chunkState = future.get();
+                merged.rowCount += chunkState.rowCount;
+                merged.validCount += chunkState.validCount;
+                merged.timings.add(chunkState.timings);
+                // Replacements within the chunk, plus its winners stored by the merge; new keys are subtracted in replaced()
+                merged.storedCount += chunkState.replaced() + merged.deduplicator.mergeFrom(chunkState.deduplicator);
             }
+            if (merged.rowCount == 0) {
+                throw new IllegalArgumentException("CSV file is empty or only contains header");
+            }
+        } catch (ExecutionException e) {
+            logger.error("Failed to parse CSV", e.getCause());
+            throw new RuntimeException("Failed to parse CSV", e.getCause());
         } catch (Exception e) {
             logger.error("Failed to parse CSV", e);
             throw new RuntimeException("Failed to parse CSV", e);
         }
 
-        logger.info("Parsed {} valid course records", validRecords.size());
-        return RemoveDuplicates(validRecords);
+        logger.info("Parsed {} valid course records", merged.validCount);
+        logger.info("Removed duplicates down to {} records", merged.deduplicator.size());
+        metrics.recordParse(merged.timings, merged.validCount, merged.replaced());
+        statsListener.accept(merged.stats());
+        return merged.deduplicator.records();
     }
+
     /**
-     * Removes duplicates of the course records by keeping only the latest attempt per user-course combination.
-     * Uses email and course name as the identifiers
-     * Prefers completed > failed > inprogress when dates are the same.
+     * Iterates the parser lazily, validating each row and offering it to the given deduplication state.
+     * Column indexes are resolved once from the parser's header, and repeated values are shared
+     * through a string pool scoped to the file (or to the chunk in parallel mode). A state that only
+     * copies values out of offered records (such as {@link CourseRecordBatch}) keeps its own dictionaries,
+     * so it gets no pool and one reused record instead of a new one per row.
+     *
+     * The time of each stage is added up on sampled rows ({@link PipelineMetrics.ParseTimings#startRow});
+     * logging a rejected row is charged to the stage that rejected it.
+     * Rejected rows are logged with their data row number in the file (1 for the row after the header).
+     *
+     * @param rowOffset number of data rows in the file before the parser's first record
      */
-    private List<CourseRecord> RemoveDuplicates(List<CourseRecord> records) {
-        Map<String, CourseRecord> latestByUserCourse = new HashMap<>();
-        for (CourseRecord record : records) {
-            String key = record.getEmail() + "|" + record.getCourseName();
-            CourseRecord existing = latestByUserCourse.get(key);
+    private <S extends DeduplicationState> ParseState<S> parseRecords(CSVParser parser, long rowOffset, S deduplicator) {
+        ParseState<S> state = new ParseState<>(deduplicator);
+        PipelineMetrics.ParseTimings timings = state.timings;
+        boolean copies = deduplicator.copiesOffered();
+        StringPool strings = copies ? new StringPool(0) : new StringPool();
+        CourseRecordMapper mapper = CourseRecordMapper.forHeader(parser.getHeaderMap(), strings);
+        CourseRecord scratch = copies ? new CourseRecord() : null;
+        Iterator<CSVRecord> rows = parser.iterator();
+        for (long mark = timings.startRow(); rows.hasNext(); mark = timings.startRow()) {
+            CSVRecord record = rows.next();
+            mark = timings.lap(PipelineMetrics.Stage.READ, mark);
+            state.rowCount++;
+
+            PipelineMetrics.Stage stage = PipelineMetrics.Stage.PARSE;
+            try {
+                CourseRecord courseRecord = mapper.map(record, scratch);
+                mark = timings.lap(stage, mark);
+
+                // Skip if completion date is outside course duration (only if provided)
+                stage = PipelineMetrics.Stage.VALIDATE;
+                LocalDate completion = courseRecord.getCompletionDate();
+                if (completion != null &&
+                        (completion.isBefore(courseRecord.getStartDate()) || completion.isAfter(courseRecord.getEndDate()))) {
+                    logger.warn("Skipping row {} outside course date range: {}", rowOffset + record.getRecordNumber(), record.toList());
+                    timings.reject(RejectReason.DATE_OUT_OF_RANGE);
+                    timings.lap(stage, mark);
+                    continue;
+                }
+                mark = timings.lap(stage, mark);
 
-            if (existing == null) {
-                latestByUserCourse.put(key, record);
-                logger.debug("Adding new entry: {}", key);
-                continue;
+                stage = PipelineMetrics.Stage.DEDUP;
+                if (state.deduplicator.offer(courseRecord)) {
+                    state.storedCount++;
+                }
+                state.validCount++;
+                logger.debug("Accepted record: {} | {} | {}", courseRecord.getEmail(), courseRecord.getCourseName(), courseRecord.getStatus());
+                timings.lap(stage, mark);
+            } catch (UncheckedIOException e) {
+                // Failing to spill to disk is not a problem of the row
+                throw e;
+            } catch (Exception e) {
+                logger.warn("Skipping invalid row {}: {} | Reason: {}", rowOffset + record.getRecordNumber(), record.toList(), e.getMessage());
+                timings.reject(e instanceof InvalidRowException invalid ? invalid.getReason() : RejectReason.PARSE_ERROR);
+                timings.lap(stage, mark);
             }
 
-            LocalDate newDate = record.getCompletionDate();
-            LocalDate oldDate = existing.getCompletionDate();
+        }
+        return state;
+    }
+
+    /**
+     * Parses the header record with the same format rules as the sequential path.
+     */
+    private String[] readHeader(FileChannel channel, long headerEnd) throws IOException {
+        try (CSVParser parser = HEADER_FORMAT.parse(new FileRangeReader(channel, 0, headerEnd))) {
+            return parser.getHeaderNames().toArray(new String[0]);
+        }
+    }
 
-            boolean newIsLater = newDate != null && (oldDate == null || newDate.isAfter(oldDate));
-            boolean sameDate = newDate != null && newDate.equals(oldDate);
+    private ForkJoinPool parsePool() {
+        ForkJoinPool pool = parsePool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = parsePool;
+                if (pool == null) {
+                    int threads = parallelThreads > 0 ? parallelThreads : Runtime.getRuntime().availableProcessors();
+                    pool = parsePool = new ForkJoinPool(threads);
+                }
+            }
+        }
+        return pool;
+    }
 
-            // Replace if newer or same date with higher status priority
-            if (newIsLater || (sameDate && statusPriority(record.getStatus()) > statusPriority(existing.getStatus()))) {
-                logger.debug("Replacing entry: {} | Old status: {} -> New status: {}", key, existing.getStatus(), record.getStatus());
-                latestByUserCourse.put(key, record);
+    /**
+     * Deletes deduplication spill folders left by an earlier run that stopped while parsing.
+     */
+    @PostConstruct
+    public void removeAbandonedSpills() throws IOException {
+        Path folder = Paths.get(spillFolder);
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        try (DirectoryStream<Path> spills = Files.newDirectoryStream(folder, "dedup-*")) {
+            for (Path spill : spills) {
+                JsonWriterService.deleteRecursively(spill);
+                logger.info("Deleted abandoned deduplication spill {}", spill.getFileName());
             }
         }
-        logger.info("Removed duplicates down to {} records", latestByUserCourse.size());
-        return new ArrayList<>(latestByUserCourse.values());
+    }
+
+    @PreDestroy
+    public void shutdownParsePool() {
+        if (parsePool != null) {
+            parsePool.shutdownNow();
+        }
+    }
+
+    /**
+     * Row counters, stage timings and deduplication state for one parsed file or chunk.
+     */
+    private static final class ParseState<S extends DeduplicationState> {
+        private final S deduplicator;
+        private final PipelineMetrics.ParseTimings timings = new PipelineMetrics.ParseTimings();
+        private int rowCount;
+        private int validCount;
+        // Offers that were stored, whether for a new key or replacing an older attempt
+        private int storedCount;
+
+        private ParseState(S deduplicator) {
+            this.deduplicator = deduplicator;
+        }
+
+        private int replaced() {
+            return storedCount - deduplicator.size();
+        }
+
+        private ParseStats stats() {
+            return new ParseStats(rowCount, validCount, deduplicator.size());
+        }
+    }
+
+    /**
+     * Row counts of a successfully parsed file.
+     *
+     * @param rows      data rows read (excluding the header)
+     * @param validRows rows that passed validation
+     * @param records   distinct user+course records left after deduplication
+     */
+    public record ParseStats(int rows, int validRows, int records) {
+    }
+
+    /**
+     * Builds the course, user and result summaries in a single pass over the records.
+     */
+    public SummaryAggregator summarize(List<CourseRecord> records) {
+        return summarize(records, true);
+    }
+
+    /**
+     * Builds the summaries in a single pass, optionally skipping the result list for callers
+     * that stream results straight from the records.
+     */
+    public SummaryAggregator summarize(List<CourseRecord> records, boolean collectResults) {
+        SummaryAggregator aggregator = metrics.timeSummarize("all",
+                () -> new SummaryAggregator(collectResults).acceptAll(records));
+        logger.info("Aggregated {} records in a single pass", records.size());
+        return aggregator;
     }
 
     /**
@@ -112,44 +448,8 @@ public class CsvProcessingService {
      * - Earliest and latest completion dates
      */
     public List<CourseDTO> summarizeCourses(List<CourseRecord> records) {
-        Map<String, List<CourseRecord>> grouped = records.stream()
-                .collect(Collectors.groupingBy(CourseRecord::getCourseName));
-
-        List<CourseDTO> result = new ArrayList<>();
-
-        for (var entry : grouped.entrySet()) {
-            String courseName = entry.getKey();
-            List<CourseRecord> courseRecs = entry.getValue();
-
-            CourseRecord sample = courseRecs.get(0);
-            Map<String, Integer> results = new HashMap<>();
-            results.put("completed", 0);
-            results.put("failed", 0);
-            results.put("inprogress", 0);
-            Map<Integer, Integer> grades = new HashMap<>();
-
-            LocalDate first = null;
-            LocalDate last = null;
-
-            for (CourseRecord r : courseRecs) {
-                results.merge(r.getStatus(), 1, Integer::sum);
-                if ("completed".equals(r.getStatus()) && r.getGrade() != null) {
-                    grades.merge(r.getGrade(), 1, Integer::sum);
-                    if (first == null || r.getCompletionDate().isBefore(first)) first = r.getCompletionDate();
-                    if (last == null || r.getCompletionDate().isAfter(last)) last = r.getCompletionDate();
-                }
-            }
-
-            result.add(new CourseDTO(
-                    courseName,
-                    sample.getStartDate(),
-                    sample.getEndDate(),
-                    results,
-                    grades,
-                    first,
-                    last
-            ));
-        }
+        List<CourseDTO> result = metrics.timeSummarize("courses",
+                () -> new SummaryAggregator(false).acceptAll(records).courses());
         logger.info("Summarized {} courses", result.size());
         return result;
     }
@@ -160,41 +460,8 @@ public class CsvProcessingService {
      * - Average grade for completed courses
      */
     public List<UserDTO> summarizeUsers(List<CourseRecord> records) {
-        Map<String, List<CourseRecord>> grouped = records.stream()
-                .collect(Collectors.groupingBy(CourseRecord::getEmail));
-
-        List<UserDTO> result = new ArrayList<>();
-
-        for (var entry : grouped.entrySet()) {
-            String email = entry.getKey();
-            List<CourseRecord> userRecs = entry.getValue();
-            CourseRecord sample = userRecs.get(0);
-
-            Map<String, Integer> courseResults = new HashMap<>();
-            List<Integer> completedGrades = new ArrayList<>();
-
-            courseResults.put("completed", 0);
-            courseResults.put("failed", 0);
-            courseResults.put("inprogress", 0);
-
-            for (CourseRecord r : userRecs) {
-                String status = r.getStatus();
-                courseResults.merge(r.getStatus(), 1, Integer::sum);
-                if ("completed".equals(r.getStatus()) && r.getGrade() != null) {
-                    completedGrades.add(r.getGrade());
-                }
-            }
-
-            Double gradeAvg = completedGrades.isEmpty() ? null : completedGrades.stream().mapToInt(i -> i).average().orElse(0);
-
-            result.add(new UserDTO(
-                    sample.getFirstName(),
-                    sample.getLastName(),
-                    email,
-                    courseResults,
-                    gradeAvg
-            ));
-        }
+        List<UserDTO> result = metrics.timeSummarize("users",
+                () -> new SummaryAggregator(false).acceptAll(records).users());
         logger.info("Summarized {} users", result.size());
         return result;
     }
@@ -203,32 +470,9 @@ public class CsvProcessingService {
      * Generates flat result list for each completed or failed attempt.
      */
     public List<ResultDTO> summarizeResults(List<CourseRecord> records) {
-
-        List<ResultDTO> results = records.stream()
-                .filter(r -> "completed".equals(r.getStatus()) || "failed".equals(r.getStatus()))
-                .map(r -> new ResultDTO(
-                        r.getCourseName(),
-                        r.getEmail(),
-                        r.getStatus(),
-                        r.getGrade(),
-                        r.getCompletionDate()
-                ))
-                .collect(Collectors.toList());
+        List<ResultDTO> results = metrics.timeSummarize("results",
+                () -> new SummaryAggregator().acceptAll(records).results());
         logger.info("Generated {} course result entries", results.size());
         return results;
-
-    }
-
-    /**
-     * Maps course status to numeric priority for deduplication purposes priorizing completed courses.
-     */
-    private int statusPriority(String status) {
-        return switch (status) {
-            case "completed" -> 3;
-            case "failed" -> 2;
-            case "inprogress" -> 1;
-            default -> 0;
-        };
     }
 }
-
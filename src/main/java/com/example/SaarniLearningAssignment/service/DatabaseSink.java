@@ -0,0 +1,302 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.CourseDTO;
+import com.example.SaarniLearningAssignment.dto.UserDTO;
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.zaxxer.hikari.HikariDataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Optional sink that stores the deduplicated records and summaries of every processed file in a database.
+ *
+ * - Records are upserted on email+course, and an existing row is only replaced under the rule of
+ *   {@link RecordDeduplicator#supersedes}, so files may arrive in any order
+ * - On PostgreSQL the records are streamed with {@code COPY} into a temporary table and upserted with a
+ *   single {@code INSERT ... ON CONFLICT}; other databases (H2 in tests) get a JDBC-batched {@code MERGE}
+ * - Course and user summaries are inserted per file, linked to an {@code import_run} row
+ * - Each file is one transaction; the tables are created from {@code db/schema.sql} on startup
+ *
+ * The application keeps {@code DataSourceAutoConfiguration} excluded, so this service opens its own
+ * connection pool from the {@code app.db.*} settings, and only when {@code app.db.enabled} is set.
+ */
+@Service
+public class DatabaseSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseSink.class);
+
+    private static final String RECORD_COLUMNS =
+            "email, course_name, first_name, last_name, start_date, end_date, status, grade, completion_date, run_id";
+    private static final String RECORD_UPDATES =
+            "first_name = %1$s.first_name, last_name = %1$s.last_name, start_date = %1$s.start_date, "
+                    + "end_date = %1$s.end_date, status = %1$s.status, grade = %1$s.grade, "
+                    + "completion_date = %1$s.completion_date, run_id = %1$s.run_id";
+
+    @Value("${app.db.enabled}")
+    private boolean enabled;
+    @Value("${app.db.url}")
+    private String url;
+    @Value("${app.db.username}")
+    private String username;
+    @Value("${app.db.password}")
+    private String password;
+    @Value("${app.db.batch-size}")
+    private int batchSize;
+
+    private final CsvProcessingService csvProcessingService;
+    private HikariDataSource dataSource;
+
+    public DatabaseSink(CsvProcessingService csvProcessingService) {
+        this.csvProcessingService = csvProcessingService;
+    }
+
+    /**
+     * Opens the connection pool and creates missing tables.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(username).password(password).build();
+        dataSource.setPoolName("db-sink");
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema.sql")).execute(dataSource);
+        logger.info("Storing processed records in {}", url);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stores the deduplicated records of one file and its summaries in one transaction.
+     *
+     * @return id of the {@code import_run} row
+     */
+    public long store(List<CourseRecord> records, String fileName) throws SQLException {
+        long start = System.nanoTime();
+        SummaryAggregator summary = csvProcessingService.summarize(records, false);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long runId = insertRun(connection, fileName, records.size());
+                boolean copy = connection.isWrapperFor(PGConnection.class);
+                if (copy) {
+                    copyRecords(connection, runId, records);
+                } else {
+                    mergeRecords(connection, runId, records);
+                }
+                insertCourses(connection, runId, summary.courses());
+                insertUsers(connection, runId, summary.users());
+                connection.commit();
+                logger.info("Stored {} records of {} as run {} in {} ms ({})", records.size(), fileName, runId,
+                        (System.nanoTime() - start) / 1_000_000, copy ? "COPY" : "batched MERGE");
+                return runId;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static long insertRun(Connection connection, String fileName, int records) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO import_run (file_name, processed_at, records) VALUES (?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            insert.setString(1, fileName);
+            insert.setObject(2, OffsetDateTime.now());
+            insert.setInt(3, records);
+            insert.executeUpdate();
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                keys.next();
+                return keys.getLong("id");
+            }
+        }
+    }
+
+    /**
+     * PostgreSQL: streams the records as CSV into a temporary table, then upserts them in one statement.
+     */
+    private static void copyRecords(Connection connection, long runId, List<CourseRecord> records) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE course_record_stage (LIKE course_record) ON COMMIT DROP");
+        }
+        String copy = "COPY course_record_stage (" + RECORD_COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new PGCopyOutputStream(connection.unwrap(PGConnection.class), copy, 1 << 16),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            String run = Long.toString(runId);
+            for (CourseRecord record : records) {
+                out.write(csv(record.getEmail()) + ',' + csv(record.getCourseName()) + ','
+                        + csv(record.getFirstName()) + ',' + csv(record.getLastName()) + ','
+                        + csv(record.getStartDate()) + ',' + csv(record.getEndDate()) + ','
+                        + csv(record.getStatus()) + ',' + csv(record.getGrade()) + ','
+                        + csv(record.getCompletionDate()) + ',' + run + '\n');
+            }
+        } catch (IOException e) {
+            throw new SQLException("COPY into course_record_stage failed", e);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO course_record (" + RECORD_COLUMNS + ") "
+                    + "SELECT " + RECORD_COLUMNS + " FROM course_record_stage "
+                    + "ON CONFLICT (email, course_name) DO UPDATE SET " + RECORD_UPDATES.formatted("EXCLUDED")
+                    + " WHERE " + supersedes("EXCLUDED", "course_record"));
+        }
+    }
+
+    /**
+     * Other databases: one standard {@code MERGE} per record, sent in JDBC batches.
+     */
+    private void mergeRecords(Connection connection, long runId, List<CourseRecord> records) throws SQLException {
+        String merge = "MERGE INTO course_record t USING (VALUES (CAST(? AS VARCHAR(320)), CAST(? AS VARCHAR(1000)), "
+                + "CAST(? AS VARCHAR(1000)), CAST(? AS VARCHAR(1000)), CAST(? AS DATE), CAST(? AS DATE), "
+                + "CAST(? AS VARCHAR(100)), CAST(? AS INTEGER), CAST(? AS DATE), CAST(? AS BIGINT))) "
+                + "AS s (" + RECORD_COLUMNS + ") ON t.email = s.email AND t.course_name = s.course_name "
+                + "WHEN MATCHED AND " + supersedes("s", "t") + " THEN UPDATE SET " + RECORD_UPDATES.formatted("s")
+                + " WHEN NOT MATCHED THEN INSERT (" + RECORD_COLUMNS + ") VALUES (s."
+                + String.join(", s.", RECORD_COLUMNS.split(", ")) + ")";
+        try (PreparedStatement statement = connection.prepareStatement(merge)) {
+            int pending = 0;
+            for (CourseRecord record : records) {
+                statement.setString(1, record.getEmail());
+                statement.setString(2, record.getCourseName());
+                statement.setString(3, record.getFirstName());
+                statement.setString(4, record.getLastName());
+                statement.setObject(5, record.getStartDate(), Types.DATE);
+                statement.setObject(6, record.getEndDate(), Types.DATE);
+                statement.setString(7, record.getStatus());
+                statement.setObject(8, record.getGrade(), Types.INTEGER);
+                statement.setObject(9, record.getCompletionDate(), Types.DATE);
+                statement.setLong(10, runId);
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private void insertCourses(Connection connection, long runId, List<CourseDTO> courses) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO course_summary (run_id, course_name, start_date, end_date, completed, failed, inprogress, "
+                        + "grades, first_completion_date, most_recent_completion_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            int pending = 0;
+            for (CourseDTO course : courses) {
+                Map<String, Integer> results = course.getResults();
+                insert.setLong(1, runId);
+                insert.setString(2, course.getName());
+                insert.setObject(3, course.getStartDate(), Types.DATE);
+                insert.setObject(4, course.getEndDate(), Types.DATE);
+                insert.setInt(5, results.get("completed"));
+                insert.setInt(6, results.get("failed"));
+                insert.setInt(7, results.get("inprogress"));
+                insert.setString(8, gradesJson(course.getGrades()));
+                insert.setObject(9, course.getFirstCompletionDate(), Types.DATE);
+                insert.setObject(10, course.getMostRecentCompletionDate(), Types.DATE);
+                insert.addBatch();
+                if (++pending == batchSize) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private void insertUsers(Connection connection, long runId, List<UserDTO> users) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO user_summary (run_id, email, first_name, last_name, completed, failed, inprogress, "
+                        + "grade_average) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            int pending = 0;
+            for (UserDTO user : users) {
+                Map<String, Integer> results = user.getCourseResults();
+                insert.setLong(1, runId);
+                insert.setString(2, user.getEmail());
+                insert.setString(3, user.getFirstName());
+                insert.setString(4, user.getLastName());
+                insert.setInt(5, results.get("completed"));
+                insert.setInt(6, results.get("failed"));
+                insert.setInt(7, results.get("inprogress"));
+                insert.setObject(8, user.getGradeAverage(), Types.DOUBLE);
+                insert.addBatch();
+                if (++pending == batchSize) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * SQL form of {@link RecordDeduplicator#supersedes}: whether the source row should replace the target row.
+     */
+    static String supersedes(String source, String target) {
+        return source + ".completion_date IS NOT NULL AND (" + target + ".completion_date IS NULL OR "
+                + source + ".completion_date > " + target + ".completion_date OR ("
+                + source + ".completion_date = " + target + ".completion_date AND "
+                + statusPriority(source) + " > " + statusPriority(target) + "))";
+    }
+
+    private static String statusPriority(String alias) {
+        return "CASE " + alias + ".status WHEN 'completed' THEN 3 WHEN 'failed' THEN 2 WHEN 'inprogress' THEN 1 ELSE 0 END";
+    }
+
+    private static String gradesJson(Map<Integer, Integer> grades) {
+        StringJoiner json = new StringJoiner(",", "{", "}");
+        grades.forEach((grade, count) -> json.add("\"" + grade + "\":" + count));
+        return json.toString();
+    }
+
+    /**
+     * One field in PostgreSQL CSV format: null is an empty unquoted field, values are quoted.
+     */
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.toString().replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+
+import java.util.List;
+
+/**
+ * Per-run state that keeps the winning record per user+course while rows are streamed in.
+ *
+ * Implementations apply the rule of {@link RecordDeduplicator} and differ only in how the
+ * winners are stored. States that can also be built per chunk and merged, for parallel parsing,
+ * are {@link MergeableDeduplicationState}s.
+ */
+public interface DeduplicationState {
+
+    /**
+     * Offers a validated record.
+     *
+     * @return true if the record was stored (new key or replaced an older attempt)
+     */
+    boolean offer(CourseRecord record);
+
+    /**
+     * Whether {@link #offer} only copies values out of the record, so the caller may reuse the same
+     * record object for the next row instead of creating one per row.
+     */
+    default boolean copiesOffered() {
+        return false;
+    }
+
+    /**
+     * Number of distinct user+course combinations seen so far.
+     */
+    int size();
+
+    /**
+     * Returns the deduplicated records.
+     */
+    List<CourseRecord> records();
+}
@@ -0,0 +1,133 @@
+package com.example.SaarniLearningAssignment.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strict UTF-8 reader over the byte range {@code [start, end)} of a shared file channel.
+ *
+ * - Bytes are read with positional reads into one large buffer and decoded straight into the
+ *   caller's char array, so there is no byte stream or second char buffer in between
+ * - Malformed or truncated UTF-8 fails the read with the byte offset, instead of being replaced
+ * - A byte order mark at the start of the file is skipped
+ *
+ * Several readers can read different ranges of the same channel concurrently. Closing the reader
+ * does not close the channel.
+ */
+public class FileRangeReader extends Reader {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final FileChannel channel;
+    private final long end;
+    private final ByteBuffer buffer;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private long position;
+    private boolean atStart;
+    private boolean endOfInput;
+    // Low surrogate left over when a supplementary character was read into a one-char array
+    private int pendingChar = -1;
+
+    public FileRangeReader(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+        this.atStart = start == 0;
+        // A heap buffer keeps the decoder on its array fast path
+        this.buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(BOM.length, end - start)));
+        this.buffer.limit(0);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pendingChar >= 0) {
+            cbuf[off] = (char) pendingChar;
+            pendingChar = -1;
+            return 1;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (true) {
+            CoderResult result = decoder.decode(buffer, out, endOfInput);
+            if (result.isError()) {
+                throw new IOException("Input is not valid UTF-8 at byte " + (position - buffer.remaining()));
+            }
+            if (out.position() > off) {
+                return out.position() - off;
+            }
+            if (result.isOverflow()) {
+                // Only a surrogate pair does not fit a one-char array
+                return readSurrogatePair(cbuf, off);
+            }
+            if (endOfInput) {
+                decoder.flush(out);
+                return out.position() > off ? out.position() - off : -1;
+            }
+            endOfInput = !fill();
+        }
+    }
+
+    @Override
+    public void close() {
+        buffer.limit(0);
+        position = end;
+    }
+
+    private int readSurrogatePair(char[] cbuf, int off) throws IOException {
+        char[] pair = new char[2];
+        int read = read(pair, 0, 2);
+        cbuf[off] = pair[0];
+        if (read == 2) {
+            pendingChar = pair[1];
+        }
+        return 1;
+    }
+
+    /**
+     * Reads the next part of the range behind any bytes of an incomplete sequence left in the buffer.
+     *
+     * @return false if the range is exhausted
+     */
+    private boolean fill() throws IOException {
+        if (position >= end) {
+            return false;
+        }
+        buffer.compact();
+        buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + (end - position)));
+        int read = channel.read(buffer, position);
+        buffer.flip();
+        if (read <= 0) {
+            return false;
+        }
+        position += read;
+        if (atStart) {
+            atStart = false;
+            skipBom();
+        }
+        return true;
+    }
+
+    private void skipBom() {
+        if (buffer.remaining() < BOM.length) {
+            return;
+        }
+        for (int i = 0; i < BOM.length; i++) {
+            if (buffer.get(buffer.position() + i) != BOM[i]) {
+                return;
+            }
+        }
+        buffer.position(buffer.position() + BOM.length);
+    }
+}
@@ -7,10 +7,19 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.*;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Watches the input directory for new .csv files on a schedule.
@@ -19,11 +28,32 @@ import java.util.List;
  * - It parses and processes the file using CsvProcessingService
  * - Writes the resulting JSON files using JsonWriterService
  * - Moves the file to a "done" folder if successful, or to an "error" folder on failure
+ *
+ * Files are queued in the {@link IngestionQueue}, from which a fixed number of workers take them,
+ * so several files can be processed concurrently. A file stays in the queue's in-flight set until it
+ * has been moved out of the input folder, so later scans never pick up the same file twice.
+ *
+ * Each file is tracked as a {@link ProcessingJob} in the {@link JobRegistry}, which the job status API exposes.
+ *
+ * Files with the same content as an earlier file are not parsed again: the outputs kept in the
+ * {@link ResultCache} are published as the new output folder. With {@code app.merge.enabled} every file is
+ * also applied onto the {@link MergeStateStore}, and with {@code app.db.enabled} stored by the {@link DatabaseSink};
+ * the cache is not used in either case. The output folder is published only after both have the file, so a file
+ * moved to the error folder has no output folder, and dropping it in again applies nothing twice.
+ *
+ * Before a file is parsed it is admitted by the {@link MemoryBudget}, which may route it to the
+ * low-memory parse or hold it until other files release heap.
+ *
+ * The number of CSV files waiting in the input folder is exposed as a gauge, and every finished file
+ * is counted by outcome, through {@link PipelineMetrics}.
  */
 @Service
 public class FileWatcherService {
     private static final Logger logger = LoggerFactory.getLogger(FileWatcherService.class);
 
+    // How often an idle worker checks whether the application is shutting down
+    private static final long POLL_MILLIS = 500;
+
     @Value("${app.scheduler.delay}")
     private long schedulerDelay;
     @Value("${app.input.folder}")
@@ -34,52 +64,269 @@ public class FileWatcherService {
     @Value("${app.error.folder}")
     private String errorFolder;
 
+    @Value("${app.processing.workers}")
+    private int workers;
+    @Value("${app.processing.virtual-threads}")
+    private boolean virtualThreads;
+
     private final CsvProcessingService csvProcessingService;
     private final JsonWriterService jsonWriterService;
+    private final JobRegistry jobRegistry;
+    private final ResultCache resultCache;
+    private final MergeStateStore mergeStateStore;
+    private final DatabaseSink databaseSink;
+    private final IngestionQueue ingestionQueue;
+    private final MemoryBudget memoryBudget;
+    private final PipelineMetrics metrics;
 
-    public FileWatcherService(CsvProcessingService csvProcessingService, JsonWriterService jsonWriterService) {
+    private ExecutorService executor;
+    private volatile boolean stopping;
+
+    public FileWatcherService(CsvProcessingService csvProcessingService, JsonWriterService jsonWriterService,
+                              JobRegistry jobRegistry, ResultCache resultCache, MergeStateStore mergeStateStore,
+                              DatabaseSink databaseSink, IngestionQueue ingestionQueue, MemoryBudget memoryBudget,
+                              PipelineMetrics metrics) {
         this.csvProcessingService = csvProcessingService;
         this.jsonWriterService = jsonWriterService;
+        this.jobRegistry = jobRegistry;
+        this.resultCache = resultCache;
+        this.mergeStateStore = mergeStateStore;
+        this.databaseSink = databaseSink;
+        this.ingestionQueue = ingestionQueue;
+        this.memoryBudget = memoryBudget;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts the workers, each of which takes files from the ingestion queue one at a time.
+     */
+    @PostConstruct
+    public void startWorkers() {
+        if (workers < 1) {
+            throw new IllegalStateException("app.processing.workers must be at least 1");
+        }
+        if (virtualThreads) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("csv-worker-", 1).factory());
+        } else {
+            executor = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("csv-worker-", 1).factory());
+        }
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+        logger.info("Started {} CSV workers ({} threads)", workers, virtualThreads ? "virtual" : "platform");
+
+        metrics.gauge("csv.files.backlog", "CSV files waiting in the input folder", this, FileWatcherService::countInputFiles);
+    }
+
+    /**
+     * Lets files that are already being processed finish before the application shuts down.
+     */
+    @PreDestroy
+    public void stopWorkers() throws InterruptedException {
+        stopping = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.warn("CSV workers did not finish in time, interrupting them");
+            executor.shutdownNow();
+        }
     }
 
     /**
      * Runs on a fixed interval defined in application.properties.
-     * Scans the input folder for new CSV files and processes each.
+     * Scans the input folder for new CSV files and queues each one that is not already being processed.
      */
     @Scheduled(fixedDelayString = "${app.scheduler.delay}")
     public void checkForCsvFiles() {
         logger.info("Checking folder for new CSV files: {}", inputFolder);
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(inputFolder), "*.csv")) {
             for (Path path : stream) {
-                logger.info("Processing file: {}", path.getFileName());
-                try (FileInputStream is = new FileInputStream(path.toFile())) {
-                    // Step 1: Parse and filter records
-                    List<CourseRecord> records = csvProcessingService.parseAndFilter(is);
-                    // Step 2: Write JSON summaries to output folder
-                    jsonWriterService.writeOutputs(records, path.getFileName().toString());
-                    // Step 3: Move original CSV to "done" folder
-                    Files.move(path, Paths.get(doneFolder, path.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
-                    System.out.println("Processed file: " + path.getFileName());
-                    logger.info("Finished processing: {} → Moved to: {}", path.getFileName(), Paths.get(doneFolder));
-
-                } catch (Exception e) {
-                    // If anything goes wrong, move file to error folder and log the error
-                    logger.error("Failed to process file {}: {}", path.getFileName(), e.getMessage(), e);
-                    System.err.println("Failed to process " + path.getFileName() + ": " + e.getMessage());
-
-                    try {
-                        Path errorTarget = Paths.get(errorFolder, path.getFileName().toString());
-                        Files.createDirectories(Paths.get(errorFolder)); // ensure it exists
-                        Files.move(path, errorTarget, StandardCopyOption.REPLACE_EXISTING);
-                        logger.info("Moved failed file to error folder: {}", errorTarget);
-                    } catch (IOException ioEx) {
-                        logger.error("Failed to move {} to error folder: {}", path.getFileName(), ioEx.getMessage(), ioEx);
-                    }
-                }
+                submit(path);
             }
         } catch (IOException e) {
             logger.error("Error reading input folder {}: {}", inputFolder, e.getMessage(), e);
             System.err.println("Failed to scan input folder: " + e.getMessage());
         }
     }
+
+    /**
+     * Queues a file for processing unless it is already in flight.
+     *
+     * @return true if the file was queued by this call
+     */
+    public boolean submit(Path path) {
+        if (!ingestionQueue.offer(path)) {
+            logger.debug("Skipping {}: already being processed", path.getFileName());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Number of files currently queued or being processed.
+     */
+    public int getInFlightCount() {
+        return ingestionQueue.getInFlightCount();
+    }
+
+    /**
+     * Worker loop: processes queued files until the application shuts down. Files still waiting
+     * then stay in the input folder and are queued again by the first scan after a restart.
+     */
+    private void work() {
+        while (!stopping) {
+            IngestionQueue.Entry entry;
+            try {
+                entry = ingestionQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entry == null) {
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean processed = false;
+            try {
+                processed = processFile(entry.path());
+            } finally {
+                resultCache.forgetUpload(entry.path());
+                ingestionQueue.done(entry, processed ? System.nanoTime() - start : -1);
+            }
+        }
+    }
+
+    /**
+     * Counts the CSV files currently in the input folder, including those in flight.
+     * Sampled whenever the metrics are read; NaN if the folder cannot be listed.
+     */
+    private double countInputFiles() {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(inputFolder), "*.csv")) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+        return count;
+    }
+
+    /**
+     * Processes a single CSV file and moves it to the done or error folder.
+     *
+     * @return false if the file was no longer there
+     */
+    private boolean processFile(Path path) {
+        if (!Files.exists(path)) {
+            logger.debug("Skipping {}: no longer in the input folder", path.getFileName());
+            return false;
+        }
+        logger.info("Processing file: {}", path.getFileName());
+        ProcessingJob job = jobRegistry.claim(path.getFileName().toString());
+        try {
+            job.parsing();
+            String cacheKey = resultCache.isActive() ? resultCache.keyFor(path) : null;
+            Path outputDir = cacheKey != null ? publishCached(path, job, cacheKey) : null;
+            String outcome = outputDir != null ? "cached" : "done";
+            if (outputDir == null) {
+                try (MemoryBudget.Admission admission = memoryBudget.admit(path)) {
+                    outputDir = parseAndWrite(path, job, cacheKey, admission.isLowMemory());
+                }
+            }
+            // Step 3: Move original CSV to "done" folder
+            Files.move(path, Paths.get(doneFolder, path.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
+            job.done(outputDir);
+            metrics.fileProcessed(outcome);
+            System.out.println("Processed file: " + path.getFileName());
+            logger.info("Finished processing: {} → Moved to: {}", path.getFileName(), Paths.get(doneFolder));
+
+        } catch (InterruptedException e) {
+            // Shutting down while waiting for memory: the file stays in the input folder for the next run
+            Thread.currentThread().interrupt();
+            job.failed("Interrupted by shutdown before processing");
+            logger.warn("Interrupted before processing {}", path.getFileName());
+        } catch (Exception e) {
+            // If anything goes wrong, move file to error folder and log the error
+            logger.error("Failed to process file {}: {}", path.getFileName(), e.getMessage(), e);
+            System.err.println("Failed to process " + path.getFileName() + ": " + e.getMessage());
+            job.failed(e.getCause() != null ? e.getMessage() + ": " + e.getCause().getMessage() : e.getMessage());
+            metrics.fileProcessed("error");
+
+            try {
+                Path errorTarget = Paths.get(errorFolder, path.getFileName().toString());
+                Files.createDirectories(Paths.get(errorFolder)); // ensure it exists
+                Files.move(path, errorTarget, StandardCopyOption.REPLACE_EXISTING);
+                logger.info("Moved failed file to error folder: {}", errorTarget);
+            } catch (IOException ioEx) {
+                logger.error("Failed to move {} to error folder: {}", path.getFileName(), ioEx.getMessage(), ioEx);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the file and writes its outputs, in the low-memory mode if the {@link MemoryBudget} chose it.
+     *
+     * @return the new output folder
+     */
+    private Path parseAndWrite(Path path, ProcessingJob job, String cacheKey, boolean lowMemory)
+            throws IOException, SQLException {
+        // Step 1: Parse and filter records
+        AtomicReference<CsvProcessingService.ParseStats> parseStats = new AtomicReference<>();
+        List<CourseRecord> records = csvProcessingService.parseAndFilter(path, lowMemory, stats -> {
+            parseStats.set(stats);
+            job.parsed(stats);
+        });
+        try {
+            // Step 2: Write JSON summaries into a staging folder
+            job.writing();
+            try (JsonWriterService.StagedOutputs outputs = jsonWriterService.stageOutputs(records, path.getFileName().toString());
+                 // Step 2b: Apply the file onto the school-wide merged state, staged until the database has it
+                 MergeStateStore.PendingDelta merge = mergeStateStore.isEnabled()
+                         ? mergeStateStore.stage(records, path.getFileName().toString()) : null) {
+                // Step 2c: Store the records and summaries in the database, in one transaction
+                if (databaseSink.isEnabled()) {
+                    databaseSink.store(records, path.getFileName().toString());
+                }
+                // Step 2d: Commit the merge and publish the outputs only once the database has the file,
+                // so a file failing before that leaves no trace and can simply be dropped in again
+                if (merge != null) {
+                    merge.commit();
+                }
+                Path outputDir = outputs.publish();
+                if (cacheKey != null) {
+                    resultCache.store(cacheKey, outputDir, parseStats.get());
+                }
+                return outputDir;
+            }
+        } finally {
+            // Records deduplicated on disk are streamed from a temporary file
+            if (records instanceof Closeable spilled) {
+                spilled.close();
+            }
+        }
+    }
+
+    /**
+     * Publishes the cached outputs of an identical earlier file.
+     *
+     * @return the new output folder, or null if nothing usable was cached and the file has to be parsed
+     */
+    private Path publishCached(Path path, ProcessingJob job, String cacheKey) {
+        Optional<ResultCache.Hit> hit = resultCache.lookup(cacheKey);
+        if (hit.isEmpty()) {
+            return null;
+        }
+        try {
+            Path outputDir = jsonWriterService.publishCopy(hit.get().folder(), path.getFileName().toString());
+            job.reused(hit.get().stats());
+            logger.info("Reused cached outputs for {} (identical content processed before)", path.getFileName());
+            return outputDir;
+        } catch (IOException e) {
+            // e.g. evicted while being linked, or files removed from the cache folder by hand
+            logger.warn("Cached outputs for {} are not usable, processing it again: {}", path.getFileName(), e.getMessage());
+            resultCache.invalidate(cacheKey);
+            return null;
+        }
+    }
 }
@@ -0,0 +1,271 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.QueueStatusDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of CSV files between the input folder and the {@link FileWatcherService} workers.
+ *
+ * - Files wait in the order set by {@code app.ingest.order}: FIFO, or smallest file first so
+ *   small uploads are not stuck behind a large one
+ * - Uploads reserve a place before their body is read and give it back when the file is queued or
+ *   the upload fails; when waiting files and reservations reach {@code app.ingest.queue-capacity}
+ *   the upload is refused with a {@link FullException} that suggests when to retry
+ * - Files found in the input folder by a scan or the folder watcher are always queued, since they are
+ *   already on disk; they count towards the capacity for later uploads
+ * - A file stays a member from being queued until its worker is done, so it is never queued twice
+ * - An upload is published into the input folder under the queue's lock, and refused with an
+ *   {@link InFlightException} while a file of the same name is being processed, so a worker never has
+ *   its file replaced underneath it; a waiting file may be replaced and keeps its place
+ *
+ * Depth, capacity and members are exposed as gauges and the time spent waiting as a timer, through
+ * {@link PipelineMetrics}, and as a snapshot through {@link #status()}.
+ */
+@Service
+public class IngestionQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionQueue.class);
+
+    private static final long MAX_RETRY_AFTER_SECONDS = 300;
+    // Weight of the latest file in the average processing time used for Retry-After
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    /**
+     * Order in which waiting files are handed to the workers.
+     */
+    public enum Order { FIFO, SMALLEST_FIRST }
+
+    @Value("${app.ingest.queue-capacity}")
+    private int capacity;
+    @Value("${app.ingest.order}")
+    private Order order;
+    @Value("${app.processing.workers}")
+    private int workers;
+
+    private final PipelineMetrics metrics;
+    private final Set<Path> members = ConcurrentHashMap.newKeySet();
+    private final Set<Path> processing = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private PriorityBlockingQueue<Entry> waiting;
+    private int reserved;
+    private volatile double averageProcessingNanos;
+
+    public IngestionQueue(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * A queued file.
+     *
+     * @param path          the file in the input folder
+     * @param size          size when queued, used by {@link Order#SMALLEST_FIRST}
+     * @param sequence      arrival order
+     * @param enqueuedNanos {@link System#nanoTime()} when queued
+     */
+    public record Entry(Path path, long size, long sequence, long enqueuedNanos) {
+    }
+
+    /**
+     * The queue is at capacity; the upload should be retried later.
+     */
+    public static class FullException extends IOException {
+        private final long retryAfterSeconds;
+
+        public FullException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * A file of the same name is being processed; the upload should be retried once it is done.
+     */
+    public static class InFlightException extends IOException {
+        public InFlightException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Moves a completed upload to its place in the input folder.
+     */
+    @FunctionalInterface
+    public interface Publisher {
+        void publish() throws IOException;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (capacity < 1) {
+            throw new IllegalStateException("app.ingest.queue-capacity must be at least 1");
+        }
+        Comparator<Entry> comparator = order == Order.SMALLEST_FIRST
+                ? Comparator.comparingLong(Entry::size).thenComparingLong(Entry::sequence)
+                : Comparator.comparingLong(Entry::sequence);
+        waiting = new PriorityBlockingQueue<>(Math.min(capacity, 1024), comparator);
+        logger.info("Ingestion queue holds {} files, {} first", capacity, order == Order.SMALLEST_FIRST ? "smallest" : "oldest");
+
+        metrics.gauge("csv.queue.depth", "CSV files waiting for a worker, including uploads in progress", this, IngestionQueue::depth);
+        metrics.gauge("csv.queue.capacity", "Queue depth at which uploads are refused", this, queue -> queue.capacity);
+        metrics.gauge("csv.files.in_flight", "CSV files queued or being processed", members, Set::size);
+    }
+
+    /**
+     * Reserves a place for an upload that is about to be received.
+     *
+     * @throws FullException if waiting files and reservations have reached the capacity
+     */
+    public synchronized void reserve() throws FullException {
+        int depth = depth();
+        if (depth >= capacity) {
+            metrics.uploadRefused();
+            throw new FullException("Processing queue is full (" + depth + " files waiting), try again later", retryAfterSeconds());
+        }
+        reserved++;
+    }
+
+    /**
+     * Gives back the place of an upload that failed or was cancelled.
+     */
+    public synchronized void release() {
+        if (reserved > 0) {
+            reserved--;
+        }
+    }
+
+    /**
+     * Queues a file found in the input folder unless it is already queued or being processed.
+     *
+     * @return true if the file was queued by this call
+     */
+    public boolean offer(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        if (!members.add(key)) {
+            return false;
+        }
+        waiting.add(new Entry(key, sizeOf(key), sequence.incrementAndGet(), System.nanoTime()));
+        return true;
+    }
+
+    /**
+     * Refuses an upload early, before its body is read, while a file of the same name is being processed.
+     */
+    public void checkNotProcessing(Path target) throws InFlightException {
+        Path key = target.toAbsolutePath().normalize();
+        if (processing.contains(key)) {
+            throw new InFlightException("A file named " + key.getFileName() + " is being processed, try again later");
+        }
+    }
+
+    /**
+     * Publishes a completed upload and queues it in place of its reservation. A waiting file of the same
+     * name has been replaced by the upload and keeps its place in the queue.
+     *
+     * @param target  where the upload appears in the input folder
+     * @param publish moves the upload to {@code target}
+     * @throws InFlightException if a file at {@code target} is being processed; nothing is published and
+     *                           the reservation is kept
+     */
+    public synchronized void publishReserved(Path target, Publisher publish) throws IOException {
+        // Under the lock, so no worker can take the file between the check and the move
+        checkNotProcessing(target);
+        publish.publish();
+        release();
+        offer(target);
+    }
+
+    /**
+     * Takes the next file, waiting up to the given time for one to arrive.
+     *
+     * @return the file, or null if none arrived in time
+     */
+    public Entry poll(long timeout, TimeUnit unit) throws InterruptedException {
+        Entry entry = waiting.poll(timeout, unit);
+        if (entry != null) {
+            synchronized (this) {
+                processing.add(entry.path());
+            }
+            metrics.recordQueueWait(System.nanoTime() - entry.enqueuedNanos());
+        }
+        return entry;
+    }
+
+    /**
+     * Marks a file as finished, so it can be queued again if it reappears.
+     *
+     * @param processingNanos time the worker spent on it, or -1 if it was skipped
+     */
+    public void done(Entry entry, long processingNanos) {
+        processing.remove(entry.path());
+        members.remove(entry.path());
+        if (processingNanos >= 0) {
+            double average = averageProcessingNanos;
+            averageProcessingNanos = average == 0 ? processingNanos
+                    : average + AVERAGE_WEIGHT * (processingNanos - average);
+        }
+    }
+
+    /**
+     * Files waiting for a worker plus uploads holding a reservation.
+     */
+    public synchronized int depth() {
+        return waiting.size() + reserved;
+    }
+
+    /**
+     * Files queued or being processed.
+     */
+    public int getInFlightCount() {
+        return members.size();
+    }
+
+    /**
+     * Seconds until enough waiting files have been started to free a place, estimated from the
+     * average processing time; at least 1.
+     */
+    public synchronized long retryAfterSeconds() {
+        int ahead = Math.max(1, depth() - capacity + 1);
+        double seconds = averageProcessingNanos * ahead / workers / 1e9;
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(seconds)));
+    }
+
+    public synchronized QueueStatusDTO status() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (Entry entry : waiting) {
+            oldest = Math.max(oldest, now - entry.enqueuedNanos());
+        }
+        int depth = depth();
+        return new QueueStatusDTO(depth, capacity, waiting.size(), reserved, processing.size(),
+                TimeUnit.NANOSECONDS.toMillis(oldest), depth >= capacity ? retryAfterSeconds() : 0,
+                order.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.SaarniLearningAssignment.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Event-driven detection of new CSV files in the input folder using {@link WatchService}.
+ *
+ * - Reacts to create/modify events instead of waiting for the next scheduled scan
+ * - Debounces events per file so files still being written (uploads, copies) are only
+ *   handed over once they have been quiet for {@code app.watch.debounce} milliseconds
+ * - Falls back to a full scan when the watch service reports lost events
+ *
+ * The scheduled scan in FileWatcherService keeps running as a slow fallback sweep.
+ */
+@Service
+public class InputFolderWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(InputFolderWatcher.class);
+
+    @Value("${app.watch.enabled}")
+    private boolean enabled;
+    @Value("${app.watch.debounce}")
+    private long debounceMillis;
+    @Value("${app.input.folder}")
+    private String inputFolder;
+
+    private final FileWatcherService fileWatcherService;
+
+    private final Map<Path, PendingFile> pending = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private ScheduledExecutorService debouncer;
+
+    public InputFolderWatcher(FileWatcherService fileWatcherService) {
+        this.fileWatcherService = fileWatcherService;
+    }
+
+    /**
+     * Registers the input folder with the watch service and starts the event loop.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            logger.info("Input folder watching disabled, relying on scheduled scans only");
+            return;
+        }
+        Path folder = Paths.get(inputFolder);
+        Files.createDirectories(folder);
+        watchService = folder.getFileSystem().newWatchService();
+        folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+
+        debouncer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("input-debounce").daemon().factory());
+        Thread.ofPlatform().name("input-watcher").daemon().start(() -> watchLoop(folder));
+        logger.info("Watching input folder {} (debounce {} ms)", folder, debounceMillis);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService == null) {
+            return;
+        }
+        watchService.close();
+        debouncer.shutdownNow();
+    }
+
+    private void watchLoop(Path folder) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        logger.warn("Watch events lost for {}, running a full scan", folder);
+                        fileWatcherService.checkForCsvFiles();
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    if (name.toString().toLowerCase().endsWith(".csv")) {
+                        schedule(folder.resolve(name));
+                    }
+                }
+                if (!key.reset()) {
+                    logger.error("Input folder {} is no longer accessible, stopping watcher", folder);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("Input folder watcher closed");
+        }
+    }
+
+    /**
+     * (Re)starts the quiet-period timer for a file. Every new event for the same file pushes the hand-over back.
+     */
+    private void schedule(Path path) {
+        PendingFile next = new PendingFile(sizeOf(path));
+        PendingFile previous = pending.put(path, next);
+        if (previous != null && previous.future != null) {
+            previous.future.cancel(false);
+        }
+        next.future = debouncer.schedule(() -> settle(path, next), debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands the file over once its size has not changed during the quiet period.
+     */
+    private void settle(Path path, PendingFile expected) {
+        if (pending.get(path) != expected) {
+            return; // superseded by a newer event
+        }
+        long size = sizeOf(path);
+        if (size < 0) {
+            pending.remove(path, expected);
+            return;
+        }
+        if (size != expected.size) {
+            logger.debug("{} is still growing, waiting another {} ms", path.getFileName(), debounceMillis);
+            schedule(path);
+            return;
+        }
+        if (pending.remove(path, expected)) {
+            logger.info("Detected new file: {}", path.getFileName());
+            fileWatcherService.submit(path);
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static final class PendingFile {
+        private final long size;
+        private volatile ScheduledFuture<?> future;
+
+        PendingFile(long size) {
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.SaarniLearningAssignment.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry of processing jobs.
+ *
+ * - Uploads register a job before the body is read, and mark it queued once the file is published, before a
+ *   worker can pick the file up
+ * - Workers claim the queued job for a file name; files dropped into the input folder manually get a new job
+ * - A newer upload with the same file name replaces the stored file when it is published, so the older queued
+ *   job is failed then; an upload that fails before that leaves the older job as it is
+ * - Finished jobs are kept for {@code app.jobs.retention} milliseconds and then forgotten
+ */
+@Service
+public class JobRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobRegistry.class);
+
+    @Value("${app.jobs.retention}")
+    private long retentionMillis;
+
+    private final Map<String, ProcessingJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ProcessingJob> queuedByFileName = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a job for a file that is about to be stored in the input folder.
+     */
+    public ProcessingJob register(String fileName) {
+        evictFinished();
+        return newJob(fileName);
+    }
+
+    /**
+     * Makes a registered job the one a worker claims for its file, now that the file is published.
+     * The job of an earlier upload of the same name that was still waiting is failed, as its file was replaced.
+     */
+    public void queued(ProcessingJob job) {
+        ProcessingJob replaced = queuedByFileName.put(job.getFileName(), job);
+        if (replaced != null && replaced != job) {
+            replaced.failed("Replaced by a newer upload of " + job.getFileName() + " (job " + job.getId() + ")");
+        }
+    }
+
+    /**
+     * Returns the queued job for a file a worker is about to process, or a new job if none was registered.
+     */
+    public ProcessingJob claim(String fileName) {
+        ProcessingJob job = queuedByFileName.remove(fileName);
+        if (job == null) {
+            evictFinished();
+            job = newJob(fileName);
+        }
+        return job;
+    }
+
+    /**
+     * Forgets a job whose file could not be stored, after marking it as failed.
+     */
+    public void abandon(ProcessingJob job, String reason) {
+        queuedByFileName.remove(job.getFileName(), job);
+        job.failed(reason);
+    }
+
+    public Optional<ProcessingJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Number of jobs currently known, including finished jobs within the retention period.
+     */
+    public int size() {
+        return jobs.size();
+    }
+
+    private ProcessingJob newJob(String fileName) {
+        ProcessingJob job = new ProcessingJob(UUID.randomUUID().toString(), fileName);
+        jobs.put(job.getId(), job);
+        logger.debug("Registered job {} for {}", job.getId(), fileName);
+        return job;
+    }
+
+    private void evictFinished() {
+        Instant cutoff = Instant.now().minus(Duration.ofMillis(retentionMillis));
+        jobs.values().removeIf(job -> {
+            Instant finishedAt = job.getFinishedAt();
+            return finishedAt != null && finishedAt.isBefore(cutoff);
+        });
+    }
+}
@@ -4,30 +4,54 @@ import com.example.SaarniLearningAssignment.dto.CourseDTO;
 import com.example.SaarniLearningAssignment.dto.ResultDTO;
 import com.example.SaarniLearningAssignment.dto.UserDTO;
 import com.example.SaarniLearningAssignment.model.CourseRecord;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.PropertyNamingStrategies;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /**
  * Service responsible for writing parsed and summarized course data into JSON files.
  *
- * It creates a timestamped subfolder under the output directory and stores:
+ * It creates a timestamped subfolder under the output directory and stores (with the extension
+ * of the configured {@link OutputFormat} and {@link OutputCompression}):
  * - users.json (per-user statistics)
  * - courses.json (per-course statistics)
  * - course_results.json (flattened result list for completed and failed courses)
+ *
+ * Arrays are streamed element by element through the shared {@link OutputSerializer} writers into
+ * buffered files, so the result list, which is about as large as the input, is never built in memory.
+ *
+ * The files are written into a hidden staging folder of their own that is renamed to its final name only
+ * when all three are complete, so consumers never see a partially written output folder. If that name is
+ * already taken (same file name within the same second), a {@code -1}, {@code -2}, ... suffix is added.
+ * {@link #stageOutputs} leaves the publishing to the caller, so other steps can be finished first. With
+ * {@code app.output.parallel} the three files are summarized and written concurrently
+ * (on a single CPU they are still written one after another). The time spent on each file is
+ * recorded by {@link PipelineMetrics}.
  */
 @Service
 public class JsonWriterService {
@@ -36,11 +60,20 @@ public class JsonWriterService {
 
     @Value("${app.output.folder}")
     private String outputFolder;
+    @Value("${app.output.parallel}")
+    private boolean parallelOutput;
+
+    private volatile ExecutorService outputPool;
 
     private final CsvProcessingService csvProcessingService;
+    private final OutputSerializer outputSerializer;
+    private final PipelineMetrics metrics;
 
-    public JsonWriterService(CsvProcessingService csvProcessingService) {
+    public JsonWriterService(CsvProcessingService csvProcessingService, OutputSerializer outputSerializer,
+                             PipelineMetrics metrics) {
         this.csvProcessingService = csvProcessingService;
+        this.outputSerializer = outputSerializer;
+        this.metrics = metrics;
     }
 
     /**
@@ -48,40 +81,288 @@ public class JsonWriterService {
      *
      * @param records          List of parsed and validated course records
      * @param originalFileName Name of the source CSV (used in folder naming)
+     * @return the output folder that was written
+     */
+    public Path writeOutputs(List<CourseRecord> records, String originalFileName) throws IOException {
+        try (StagedOutputs staged = stageOutputs(records, originalFileName)) {
+            return staged.publish();
+        }
+    }
+
+    /**
+     * Writes the same files as {@link #writeOutputs(List, String)} into a staging folder without
+     * publishing it, e.g. to publish only once the records are also stored elsewhere.
+     *
+     * @param records          List of parsed and validated course records
+     * @param originalFileName Name of the source CSV (used in folder naming)
+     * @return the staged files; close them after {@link StagedOutputs#publish()}, or to discard them
+     */
+    public StagedOutputs stageOutputs(List<CourseRecord> records, String originalFileName) throws IOException {
+        return stage(Paths.get(outputFolder), originalFileName, stagingDir -> {
+            if (parallelOutput && Runtime.getRuntime().availableProcessors() > 1) {
+                writeParallel(records, stagingDir);
+            } else {
+                SummaryAggregator summary = csvProcessingService.summarize(records, false);
+                writeCourses(stagingDir, summary);
+                writeUsers(stagingDir, summary);
+                writeResults(stagingDir, records);
+            }
+        });
+    }
+
+    /**
+     * Publishes the files of an earlier output folder (e.g. a {@link ResultCache} entry) as a new
+     * timestamped output folder. Files are hard-linked where possible and copied otherwise.
+     *
+     * @param sourceDir        Folder holding previously written output files
+     * @param originalFileName Name of the source CSV (used in folder naming)
+     * @return the output folder that was written
+     */
+    public Path publishCopy(Path sourceDir, String originalFileName) throws IOException {
+        return writeFolder(Paths.get(outputFolder), originalFileName, stagingDir -> {
+            for (String name : outputFileNames()) {
+                linkOrCopy(sourceDir.resolve(name), stagingDir.resolve(name));
+            }
+            logger.info("Reused outputs from {}", sourceDir);
+        });
+    }
+
+    /**
+     * Writes already summarized data as the three output files under a timestamped folder in the
+     * given parent folder (e.g. the changes of a {@link MergeStateStore} delta).
+     *
+     * @param parentFolder     Folder in which the timestamped folder is created
+     * @param originalFileName Name of the source CSV (used in folder naming)
+     * @return the output folder that was written
+     */
+    public Path writeOutputs(Path parentFolder, String originalFileName, List<CourseDTO> courses,
+                             List<UserDTO> users, Iterable<ResultDTO> results) throws IOException {
+        try (StagedOutputs staged = stageOutputs(parentFolder, originalFileName, courses, users, results)) {
+            return staged.publish();
+        }
+    }
+
+    /**
+     * Writes the same files as {@link #writeOutputs(Path, String, List, List, Iterable)} into a
+     * staging folder without publishing it.
+     *
+     * @param parentFolder     Folder in which the timestamped folder is created
+     * @param originalFileName Name of the source CSV (used in folder naming)
+     * @return the staged files; close them after {@link StagedOutputs#publish()}, or to discard them
      */
-    public void writeOutputs(List<CourseRecord> records, String originalFileName) throws IOException {
+    public StagedOutputs stageOutputs(Path parentFolder, String originalFileName, List<CourseDTO> courses,
+                                      List<UserDTO> users, Iterable<ResultDTO> results) throws IOException {
+        return stage(parentFolder, originalFileName, stagingDir -> {
+            write(stagingDir, "courses", CourseDTO.class, courses);
+            write(stagingDir, "users", UserDTO.class, users);
+            write(stagingDir, "course_results", ResultDTO.class, results);
+        });
+    }
+
+    /**
+     * Names of the files in every output folder written with the current settings.
+     */
+    public List<String> outputFileNames() {
+        return List.of(outputSerializer.fileName("courses"), outputSerializer.fileName("users"),
+                outputSerializer.fileName("course_results"));
+    }
+
+    /**
+     * Output files written into a staging folder but not published yet. Closing it before
+     * {@link #publish()} deletes them.
+     */
+    public static final class StagedOutputs implements AutoCloseable {
+        private final Path stagingDir;
+        private final Path parentFolder;
+        private final String folderName;
+        private boolean published;
+
+        private StagedOutputs(Path stagingDir, Path parentFolder, String folderName) {
+            this.stagingDir = stagingDir;
+            this.parentFolder = parentFolder;
+            this.folderName = folderName;
+        }
 
-        // Setup JSON mapper
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        /**
+         * Renames the staging folder to its timestamped name.
+         *
+         * @return the published output folder
+         */
+        public Path publish() throws IOException {
+            Path outputDir = JsonWriterService.publish(stagingDir, parentFolder, folderName);
+            published = true;
+            return outputDir;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!published) {
+                deleteRecursively(stagingDir);
+            }
+        }
+    }
+
+    /**
+     * Creates a staging folder, lets the writer fill it and publishes it under a timestamped name.
+     */
+    private Path writeFolder(Path parentFolder, String originalFileName, FolderWriter writer) throws IOException {
+        try (StagedOutputs staged = stage(parentFolder, originalFileName, writer)) {
+            return staged.publish();
+        }
+    }
+
+    /**
+     * Creates a staging folder for a timestamped output folder and lets the writer fill it.
+     */
+    private StagedOutputs stage(Path parentFolder, String originalFileName, FolderWriter writer) throws IOException {
 
         // Format timestamp for folder name
         // Create output directory named like: output/input_2025-05-25T12-34-56
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH-mm-ss"));
         String baseName = originalFileName.replace(".csv", "");
-        Path outputDir = Paths.get(outputFolder, baseName + "_" + timestamp);
-        Files.createDirectories(outputDir);
+        String folderName = baseName + "_" + timestamp;
+        // A staging folder of its own, so concurrent writers of the same file name never share one
+        Files.createDirectories(parentFolder);
+        Path stagingDir = Files.createTempDirectory(parentFolder, ".staging-");
 
-        logger.info("Writing JSON outputs to folder: {}", outputDir);
+        logger.info("Writing JSON outputs to folder: {}", parentFolder.resolve(folderName));
 
-        // Generate summaries
-        List<CourseDTO> courses = csvProcessingService.summarizeCourses(records);
-        List<UserDTO> users = csvProcessingService.summarizeUsers(records);
-        List<ResultDTO> results = csvProcessingService.summarizeResults(records);
+        StagedOutputs staged = new StagedOutputs(stagingDir, parentFolder, folderName);
+        try {
+            writer.write(stagingDir);
+            return staged;
+        } catch (IOException | RuntimeException e) {
+            try {
+                staged.close();
+            } catch (IOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+    }
 
-        // Write courses.json
-        mapper.writeValue(outputDir.resolve("courses.json").toFile(), courses);
-        logger.info("courses.json written with {} entries", courses.size());
+    @FunctionalInterface
+    private interface FolderWriter {
+        void write(Path stagingDir) throws IOException;
+    }
+
+    /**
+     * Runs the course/user summary pass and the result stream at the same time, then writes
+     * courses.json and users.json concurrently once the summary is ready.
+     */
+    private void writeParallel(List<CourseRecord> records, Path dir) throws IOException {
+        ExecutorService pool = outputPool();
+        CompletableFuture<SummaryAggregator> summary =
+                CompletableFuture.supplyAsync(() -> csvProcessingService.summarize(records, false), pool);
+        List<Callable<Long>> tasks = List.of(
+                () -> writeResults(dir, records),
+                () -> writeCourses(dir, summary.join()),
+                () -> writeUsers(dir, summary.join()));
+        try {
+            for (Future<Long> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing outputs");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException c ? c.getCause() : e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IOException("Failed to write outputs", cause);
+        }
+    }
+
+    private long writeCourses(Path dir, SummaryAggregator summary) throws IOException {
+        return write(dir, "courses", CourseDTO.class, summary.courses());
+    }
+
+    private long writeUsers(Path dir, SummaryAggregator summary) throws IOException {
+        return write(dir, "users", UserDTO.class, summary.users());
+    }
 
-        // Write users.json
-        mapper.writeValue(outputDir.resolve("users.json").toFile(), users);
-        logger.info("users.json written with {} entries", users.size());
+    /**
+     * Streams the result entries straight from the records, without building the result list.
+     */
+    private long writeResults(Path dir, List<CourseRecord> records) throws IOException {
+        return write(dir, "course_results", ResultDTO.class, SummaryAggregator.resultsOf(records));
+    }
+
+    private <T> long write(Path dir, String baseName, Class<T> type, Iterable<? extends T> values) throws IOException {
+        Path file = dir.resolve(outputSerializer.fileName(baseName));
+        long start = System.nanoTime();
+        long written = outputSerializer.writeAll(file, type, values);
+        metrics.recordWrite(baseName, System.nanoTime() - start);
+        logger.info("{} written with {} entries", file.getFileName(), written);
+        return written;
+    }
+
+    /**
+     * Renames the complete staging folder to its final name in one atomic step. If a folder with
+     * that name already exists (same file name within the same second), the first free name with a
+     * {@code -1}, {@code -2}, ... suffix is used instead, so an existing folder is never changed.
+     *
+     * @return the published folder
+     */
+    private static Path publish(Path stagingDir, Path parentFolder, String folderName) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Path outputDir = parentFolder.resolve(attempt == 0 ? folderName : folderName + "-" + attempt);
+            try {
+                return Files.move(stagingDir, outputDir, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileSystemException e) {
+                // An atomic rename onto a non-empty folder fails with a plain FileSystemException on some systems
+                if (!Files.exists(outputDir)) {
+                    throw e;
+                }
+                logger.warn("Output folder {} already exists, trying the next name", outputDir.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Hard-links the target to the source file, or copies it when links are not supported
+     * (e.g. the folders are on different file systems).
+     */
+    static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(source, target);
+        }
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private ExecutorService outputPool() {
+        ExecutorService pool = outputPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = outputPool;
+                if (pool == null) {
+                    // Each run adds at most four short-lived tasks, and runs are capped by app.processing.workers
+                    pool = outputPool = Executors.newCachedThreadPool(
+                            Thread.ofPlatform().name("json-writer-", 0).daemon().factory());
+                }
+            }
+        }
+        return pool;
+    }
 
-        // Write course_results.json
-        mapper.writeValue(outputDir.resolve("course_results.json").toFile(), results);
-        logger.info("course_results.json written with {} entries", results.size());
+    @PreDestroy
+    public void shutdownOutputPool() {
+        if (outputPool != null) {
+            outputPool.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,248 @@
+package com.example.SaarniLearningAssignment.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+
+/**
+ * Heap budget shared by the files being processed, so a few large files at the same time cannot
+ * exhaust the heap.
+ *
+ * - The budget is {@code app.memory.heap-fraction} of the maximum heap
+ * - A file's cost is estimated from its row count, which is extrapolated from the line lengths at the
+ *   start of the file, times the peak heap per row of the mode it would run in
+ * - A file runs in the standard mode while its cost fits in what is left of the budget; otherwise it
+ *   runs in the low-memory mode (sequential parse into a compact columnar batch) if that fits
+ * - With {@code app.dedup.spill.enabled} the low-memory mode deduplicates on disk past
+ *   {@code app.dedup.spill.memory-threshold}, so its cost is capped at that threshold
+ * - A file that fits in neither waits for other files to finish; one larger than the whole budget
+ *   runs in the low-memory mode once nothing else holds any of the budget
+ * - Files are admitted in the order they ask, so a waiting large file is not overtaken by a stream of
+ *   small ones
+ *
+ * The budget and the reserved bytes are exposed as gauges, and every admission is counted by mode,
+ * through {@link PipelineMetrics}.
+ */
+@Service
+public class MemoryBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+
+    // Peak heap per distinct record, measured with parallel parsing into records, with parallel parsing
+    // into CourseRecordBatch chunks (held until merged) and with a sequential parse into one batch,
+    // plus some headroom
+    static final long STANDARD_BYTES_PER_ROW = 200;
+    static final long COLUMNAR_BYTES_PER_ROW = 120;
+    static final long LOW_MEMORY_BYTES_PER_ROW = 64;
+    // Read buffers and parser state of one file
+    static final long FILE_OVERHEAD_BYTES = 8L << 20;
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    /**
+     * How a file is processed.
+     *
+     * - STANDARD: parsed as configured (parallel and columnar settings)
+     * - LOW_MEMORY: parsed sequentially into a {@link CourseRecordBatch}, or a {@link SpillingDeduplicator}
+     *   when spilling is enabled, whatever the settings
+     */
+    public enum Mode { STANDARD, LOW_MEMORY }
+
+    @Value("${app.memory.heap-fraction}")
+    private double heapFraction;
+    @Value("${app.csv.columnar}")
+    private boolean columnar;
+    @Value("${app.dedup.spill.enabled}")
+    private boolean spillEnabled;
+    @Value("${app.dedup.spill.memory-threshold}")
+    private long spillThreshold;
+
+    private final PipelineMetrics metrics;
+    private long budgetBytes;
+    private long reservedBytes;
+    // Files asking for admission, in order; only the first may be admitted
+    private final Deque<Object> waiting = new ArrayDeque<>();
+
+    public MemoryBudget(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Estimated heap use of one file.
+     *
+     * @param rows           estimated number of data rows
+     * @param standardBytes  peak heap in the standard mode
+     * @param lowMemoryBytes peak heap in the low-memory mode
+     */
+    public record Estimate(long rows, long standardBytes, long lowMemoryBytes) {
+    }
+
+    /**
+     * Budget held by a file until it is closed.
+     */
+    public final class Admission implements AutoCloseable {
+        private final Mode mode;
+        private final long bytes;
+        private boolean closed;
+
+        private Admission(Mode mode, long bytes) {
+            this.mode = mode;
+            this.bytes = bytes;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public boolean isLowMemory() {
+            return mode == Mode.LOW_MEMORY;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(bytes);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (heapFraction <= 0 || heapFraction > 1) {
+            throw new IllegalStateException("app.memory.heap-fraction must be greater than 0 and at most 1");
+        }
+        budgetBytes = (long) (Runtime.getRuntime().maxMemory() * heapFraction);
+        logger.info("Memory budget for CSV processing: {} MB", budgetBytes >> 20);
+
+        metrics.gauge("csv.memory.budget", "Heap available to the files being processed", this, budget -> budget.budgetBytes);
+        metrics.gauge("csv.memory.reserved", "Heap reserved by the files being processed", this, MemoryBudget::getReservedBytes);
+    }
+
+    /**
+     * Estimates the file's cost and waits until it can run in one of the modes.
+     */
+    public Admission admit(Path file) throws IOException, InterruptedException {
+        Estimate estimate = estimate(file);
+        Admission admission = admit(estimate);
+        if (admission.isLowMemory()) {
+            logger.info("Processing {} in low-memory mode (about {} rows, {} MB estimated, {} MB of {} MB budget in use)",
+                    file.getFileName(), estimate.rows(), estimate.standardBytes() >> 20,
+                    (getReservedBytes() - admission.bytes) >> 20, budgetBytes >> 20);
+        }
+        return admission;
+    }
+
+    /**
+     * Reserves the estimated cost, in the standard mode if it fits and in the low-memory mode
+     * otherwise, waiting for other files to release budget when neither fits.
+     */
+    public synchronized Admission admit(Estimate estimate) throws InterruptedException {
+        long lowMemoryBytes = Math.min(estimate.lowMemoryBytes(), budgetBytes);
+        Object turn = new Object();
+        waiting.add(turn);
+        try {
+            while (true) {
+                long available = budgetBytes - reservedBytes;
+                Mode mode = waiting.peek() != turn ? null
+                        : estimate.standardBytes() <= available ? Mode.STANDARD
+                        : lowMemoryBytes <= available ? Mode.LOW_MEMORY : null;
+                if (mode != null) {
+                    long bytes = mode == Mode.STANDARD ? estimate.standardBytes() : lowMemoryBytes;
+                    reservedBytes += bytes;
+                    metrics.fileAdmitted(mode.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+                    return new Admission(mode, bytes);
+                }
+                wait();
+            }
+        } finally {
+            // Admitted or interrupted, the next file in line may go
+            waiting.remove(turn);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Estimates a file's row count and peak heap from its size and the line lengths in its first 64 KB.
+     */
+    public Estimate estimate(Path file) throws IOException {
+        long size;
+        long rows;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE_SIZE, size));
+            while (sample.hasRemaining() && channel.read(sample, sample.position()) > 0) {
+                // read until the sample is full or the file ends
+            }
+            rows = estimateRows(sample.array(), sample.position(), size);
+        }
+        long lowMemoryBytes = rows * LOW_MEMORY_BYTES_PER_ROW;
+        if (spillEnabled) {
+            lowMemoryBytes = Math.min(lowMemoryBytes, spillThreshold);
+        }
+        return new Estimate(rows,
+                FILE_OVERHEAD_BYTES + rows * (columnar ? COLUMNAR_BYTES_PER_ROW : STANDARD_BYTES_PER_ROW),
+                FILE_OVERHEAD_BYTES + lowMemoryBytes);
+    }
+
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    private synchronized void release(long bytes) {
+        reservedBytes -= bytes;
+        notifyAll();
+    }
+
+    /**
+     * Counts the data rows in the sample, or extrapolates them from its average line length when the
+     * sample is only the start of the file. The header line is not counted.
+     */
+    static long estimateRows(byte[] sample, int length, long fileSize) {
+        int lines = 0;
+        int headerEnd = -1;
+        for (int i = 0; i < length; i++) {
+            if (sample[i] == '\n') {
+                if (headerEnd < 0) {
+                    headerEnd = i + 1;
+                } else {
+                    lines++;
+                }
+            }
+        }
+        if (length == fileSize) {
+            // The whole file: a last row without a line break counts too
+            boolean openRow = headerEnd >= 0 && length > headerEnd && sample[length - 1] != '\n';
+            return lines + (openRow ? 1 : 0);
+        }
+        if (lines == 0) {
+            // Not a single complete row in the sample: assume rows as long as the sample
+            return Math.max(1, fileSize / Math.max(1, length));
+        }
+        double bytesPerRow = (double) (sampleEnd(sample, length) - headerEnd) / lines;
+        return (long) Math.ceil((fileSize - headerEnd) / bytesPerRow);
+    }
+
+    private static int sampleEnd(byte[] sample, int length) {
+        int end = length;
+        while (end > 0 && sample[end - 1] != '\n') {
+            end--;
+        }
+        return end;
+    }
+}
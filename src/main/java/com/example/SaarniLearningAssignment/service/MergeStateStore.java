@@ -0,0 +1,408 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.CourseDTO;
+import com.example.SaarniLearningAssignment.dto.UserDTO;
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.example.SaarniLearningAssignment.model.UserCourseKey;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent school-wide state that every processed file is applied onto as a delta.
+ *
+ * - Keeps the winning record per email+course under the rule of {@link RecordDeduplicator#supersedes}
+ * - Only records that win against the stored state are journaled and counted, and only the courses
+ *   and users they belong to are recomputed ({@link MergedSummary}), so the cost of a file grows with
+ *   the file, not with the history
+ * - Each delta writes a folder under {@code app.merge.folder} with the affected course and user
+ *   summaries and the changed results
+ * - A delta is staged first ({@link #stage}) and only journaled and published on
+ *   {@link PendingDelta#commit()}, so a file whose later steps fail (e.g. the database) leaves neither
+ *   the state nor the delta folders changed, and a retry applies it again in full
+ * - The state is an append-only journal of winning records (NDJSON) that is replayed on startup and
+ *   rewritten once it holds more than twice as many entries as there are winners
+ *
+ * The winners are kept in memory, so heap use grows with the number of distinct email+course pairs.
+ * Applying files in order gives the same winners as deduplicating all of them concatenated.
+ * A pending delta holds the store until it is committed or closed, so views and other deltas wait
+ * for it; a {@link ReentrantLock} rather than {@code synchronized}, as that wait may include I/O.
+ */
+@Service
+public class MergeStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MergeStateStore.class);
+
+    private static final String JOURNAL_FILE = "state.ndjson";
+    // Small journals are not worth rewriting
+    private static final long MIN_COMPACT_ENTRIES = 10_000;
+
+    @Value("${app.merge.enabled}")
+    private boolean enabled;
+    @Value("${app.merge.folder}")
+    private String mergeFolder;
+
+    private final JsonWriterService jsonWriterService;
+    private final ObjectWriter journalWriter;
+    private final ObjectReader journalReader;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<UserCourseKey, CourseRecord> winners = new HashMap<>();
+    private final MergedSummary summary = new MergedSummary();
+    private FileOutputStream journalFile;
+    private Writer journal;
+    private long journalEntries;
+
+    public MergeStateStore(JsonWriterService jsonWriterService) {
+        this.jsonWriterService = jsonWriterService;
+        ObjectMapper mapper = OutputSerializer.createMapper();
+        this.journalWriter = mapper.writerFor(CourseRecord.class);
+        this.journalReader = mapper.readerFor(CourseRecord.class);
+    }
+
+    /**
+     * Summaries of the whole merged state, plus the winning records for the result list.
+     */
+    public record MergedView(List<CourseDTO> courses, List<UserDTO> users, List<CourseRecord> records) {
+    }
+
+    /**
+     * Replays the journal left by earlier runs and opens it for appending.
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            replay();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void replay() throws IOException {
+        Path folder = Paths.get(mergeFolder);
+        Files.createDirectories(folder);
+        Path file = folder.resolve(JOURNAL_FILE);
+        boolean damaged = false;
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    CourseRecord record;
+                    try {
+                        record = journalReader.readValue(line);
+                    } catch (IOException e) {
+                        // Typically the last line of a write cut short by a crash
+                        logger.warn("Ignoring the rest of the merge journal after entry {}: {}", journalEntries, e.getMessage());
+                        damaged = true;
+                        break;
+                    }
+                    put(record);
+                    journalEntries++;
+                }
+            }
+        }
+        if (damaged || needsCompaction()) {
+            compact();
+        } else {
+            openJournal();
+        }
+        logger.info("Merged state holds {} records for {} courses and {} users",
+                winners.size(), summary.courseCount(), summary.userCount());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closeJournal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Applies the deduplicated records of one file onto the merged state in one go.
+     *
+     * @param delta            records of the file, deduplicated per email+course
+     * @param originalFileName Name of the source CSV (used in folder naming)
+     * @return the folder with the affected summaries and the changed results
+     */
+    public Path apply(Collection<CourseRecord> delta, String originalFileName) throws IOException {
+        try (PendingDelta pending = stage(delta, originalFileName)) {
+            return pending.commit();
+        }
+    }
+
+    /**
+     * Applies the deduplicated records of one file onto the in-memory state and stages its delta
+     * folder, without journaling or publishing anything yet.
+     *
+     * @param delta            records of the file, deduplicated per email+course
+     * @param originalFileName Name of the source CSV (used in folder naming)
+     * @return the pending delta; close it after {@link PendingDelta#commit()}, or to undo it
+     */
+    public PendingDelta stage(Collection<CourseRecord> delta, String originalFileName) throws IOException {
+        lock.lock();
+        PendingDelta pending = null;
+        try {
+            Map<UserCourseKey, CourseRecord> changed = new LinkedHashMap<>();
+            for (CourseRecord record : delta) {
+                UserCourseKey key = UserCourseKey.of(record);
+                CourseRecord existing = changed.containsKey(key) ? changed.get(key) : winners.get(key);
+                if (existing == null || RecordDeduplicator.supersedes(record, existing)) {
+                    changed.put(key, record);
+                }
+            }
+            Set<String> courseNames = new LinkedHashSet<>();
+            Set<String> emails = new LinkedHashSet<>();
+            for (CourseRecord record : changed.values()) {
+                courseNames.add(record.getCourseName());
+                emails.add(record.getEmail());
+            }
+
+            // Remember what the changes replace, so closing an uncommitted delta can put it back
+            pending = new PendingDelta(originalFileName, delta.size(), changed.values(),
+                    summary.snapshot(courseNames, emails));
+            for (Map.Entry<UserCourseKey, CourseRecord> entry : changed.entrySet()) {
+                pending.replaced.put(entry.getKey(), winners.get(entry.getKey()));
+                put(entry.getValue());
+            }
+            pending.outputs = jsonWriterService.stageOutputs(Paths.get(mergeFolder), originalFileName,
+                    summary.courses(courseNames), summary.users(emails),
+                    SummaryAggregator.resultsOf(new ArrayList<>(changed.values())));
+            return pending;
+        } catch (IOException | RuntimeException e) {
+            if (pending != null) {
+                pending.close();
+            } else {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the summaries of the whole merged state and a copy of the winning records.
+     */
+    public MergedView view() {
+        lock.lock();
+        try {
+            return new MergedView(summary.courses(), summary.users(), new ArrayList<>(winners.values()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of email+course pairs in the merged state.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return winners.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The delta of one file, applied in memory and staged on disk but not journaled yet. Holds the
+     * store until it is closed.
+     */
+    public final class PendingDelta implements AutoCloseable {
+        private final String originalFileName;
+        private final int recordCount;
+        private final Collection<CourseRecord> changed;
+        private final MergedSummary.Snapshot snapshot;
+        // Winner before the delta per changed key, null where there was none
+        private final Map<UserCourseKey, CourseRecord> replaced = new HashMap<>();
+        private JsonWriterService.StagedOutputs outputs;
+        private boolean committed;
+        private boolean closed;
+
+        private PendingDelta(String originalFileName, int recordCount, Collection<CourseRecord> changed,
+                             MergedSummary.Snapshot snapshot) {
+            this.originalFileName = originalFileName;
+            this.recordCount = recordCount;
+            this.changed = changed;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Publishes the delta folder and appends the changes to the journal, making them durable.
+         *
+         * @return the folder with the affected summaries and the changed results
+         */
+        public Path commit() throws IOException {
+            Path outputDir = outputs.publish();
+            try {
+                append(changed);
+            } catch (IOException e) {
+                // Unpublish, so the folders keep matching the journal; closing undoes the state
+                try {
+                    JsonWriterService.deleteRecursively(outputDir);
+                } catch (IOException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                throw e;
+            }
+            committed = true;
+            logger.info("Merged {}: {} of {} records changed, {} courses and {} users affected ({} records in total)",
+                    originalFileName, changed.size(), recordCount, snapshot.courses().size(), snapshot.users().size(),
+                    winners.size());
+            if (needsCompaction()) {
+                compact();
+            }
+            return outputDir;
+        }
+
+        /**
+         * Releases the store, first undoing the in-memory changes and deleting the staged folder
+         * unless the delta was committed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (!committed) {
+                    replaced.forEach((key, previous) -> {
+                        if (previous == null) {
+                            winners.remove(key);
+                        } else {
+                            winners.put(key, previous);
+                        }
+                    });
+                    summary.restore(snapshot);
+                    if (outputs != null) {
+                        outputs.close();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void put(CourseRecord record) {
+        CourseRecord replaced = winners.put(UserCourseKey.of(record), record);
+        if (replaced != null) {
+            summary.remove(replaced);
+        }
+        summary.add(record);
+    }
+
+    private void append(Collection<CourseRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        long position = journalFile.getChannel().size();
+        try {
+            for (CourseRecord record : records) {
+                journal.write(journalWriter.writeValueAsString(record));
+                journal.write('\n');
+            }
+            journal.flush();
+            journalFile.getChannel().force(false);
+        } catch (IOException e) {
+            truncateJournal(position, e);
+            throw e;
+        }
+        journalEntries += records.size();
+    }
+
+    /**
+     * Cuts off a partially written delta, so later appends do not follow a broken line.
+     */
+    private void truncateJournal(long position, IOException failure) {
+        Path file = Paths.get(mergeFolder, JOURNAL_FILE);
+        try {
+            // Closing the stream directly drops whatever the writer still buffers
+            journalFile.close();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+            }
+            openJournal();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private boolean needsCompaction() {
+        return journalEntries > MIN_COMPACT_ENTRIES && journalEntries > 2L * winners.size();
+    }
+
+    /**
+     * Rewrites the journal with one entry per winner and swaps it in atomically.
+     */
+    private void compact() throws IOException {
+        closeJournal();
+        Path file = Paths.get(mergeFolder, JOURNAL_FILE);
+        Path temp = Paths.get(mergeFolder, JOURNAL_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile());
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            for (CourseRecord record : winners.values()) {
+                writer.write(journalWriter.writeValueAsString(record));
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getChannel().force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Compacted merge journal from {} to {} entries", journalEntries, winners.size());
+        journalEntries = winners.size();
+        openJournal();
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private void openJournal() throws IOException {
+        journalFile = new FileOutputStream(Paths.get(mergeFolder, JOURNAL_FILE).toFile(), true);
+        journal = new BufferedWriter(new OutputStreamWriter(journalFile, StandardCharsets.UTF_8), 1 << 16);
+    }
+}
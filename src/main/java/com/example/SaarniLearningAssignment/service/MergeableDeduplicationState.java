@@ -0,0 +1,16 @@
+package com.example.SaarniLearningAssignment.service;
+
+/**
+ * Deduplication state that can be built for each chunk of a file in parallel and merged in file order.
+ *
+ * @param <S> the concrete state type, so chunk states can be merged into a state of the same kind
+ */
+public interface MergeableDeduplicationState<S extends MergeableDeduplicationState<S>> extends DeduplicationState {
+
+    /**
+     * Merges the winners of another state built from a later part of the same input.
+     *
+     * @return how many of the other state's records were stored (new key or replaced an older attempt)
+     */
+    int mergeFrom(S other);
+}
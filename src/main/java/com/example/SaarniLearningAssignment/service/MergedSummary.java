@@ -0,0 +1,236 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.CourseDTO;
+import com.example.SaarniLearningAssignment.dto.UserDTO;
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Course and user summaries that can be updated record by record, used by {@link MergeStateStore}.
+ *
+ * Unlike {@link SummaryAggregator}, every contribution can be taken back again, so replacing the
+ * winning record of a user+course only touches that course and that user:
+ * - Status and grade counts are decremented, and entries that reach zero are dropped
+ * - Completion dates are kept as a counted sorted set, so the first and latest date stay exact
+ * - Names and course dates are taken from the most recently added record
+ *
+ * As names and course dates cannot be taken back, a change that may be abandoned is undone by
+ * restoring a {@link #snapshot} of the courses and users it touches instead.
+ *
+ * Not thread-safe; the store serializes access.
+ */
+class MergedSummary {
+
+    private final Map<String, CourseSummary> courses = new HashMap<>();
+    private final Map<String, UserSummary> users = new HashMap<>();
+
+    void add(CourseRecord record) {
+        courses.computeIfAbsent(record.getCourseName(), name -> new CourseSummary()).add(record);
+        users.computeIfAbsent(record.getEmail(), email -> new UserSummary()).add(record);
+    }
+
+    /**
+     * Takes back the contribution of a record that was added before.
+     */
+    void remove(CourseRecord record) {
+        courses.get(record.getCourseName()).remove(record);
+        users.get(record.getEmail()).remove(record);
+    }
+
+    /**
+     * Copies the summaries of the given courses and users, including which of them do not exist yet.
+     */
+    Snapshot snapshot(Collection<String> courseNames, Collection<String> emails) {
+        Map<String, CourseSummary> courseCopies = new HashMap<>();
+        for (String name : courseNames) {
+            CourseSummary course = courses.get(name);
+            courseCopies.put(name, course == null ? null : new CourseSummary(course));
+        }
+        Map<String, UserSummary> userCopies = new HashMap<>();
+        for (String email : emails) {
+            UserSummary user = users.get(email);
+            userCopies.put(email, user == null ? null : new UserSummary(user));
+        }
+        return new Snapshot(courseCopies, userCopies);
+    }
+
+    /**
+     * Puts back the summaries of a snapshot, dropping those that did not exist when it was taken.
+     */
+    void restore(Snapshot snapshot) {
+        snapshot.courses.forEach((name, course) -> {
+            if (course == null) {
+                courses.remove(name);
+            } else {
+                courses.put(name, course);
+            }
+        });
+        snapshot.users.forEach((email, user) -> {
+            if (user == null) {
+                users.remove(email);
+            } else {
+                users.put(email, user);
+            }
+        });
+    }
+
+    int courseCount() {
+        return courses.size();
+    }
+
+    int userCount() {
+        return users.size();
+    }
+
+    List<CourseDTO> courses() {
+        return courses(courses.keySet());
+    }
+
+    List<CourseDTO> courses(Collection<String> names) {
+        List<CourseDTO> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            result.add(courses.get(name).toDto(name));
+        }
+        return result;
+    }
+
+    List<UserDTO> users() {
+        return users(users.keySet());
+    }
+
+    List<UserDTO> users(Collection<String> emails) {
+        List<UserDTO> result = new ArrayList<>(emails.size());
+        for (String email : emails) {
+            result.add(users.get(email).toDto(email));
+        }
+        return result;
+    }
+
+    record Snapshot(Map<String, CourseSummary> courses, Map<String, UserSummary> users) {
+    }
+
+    /**
+     * Status counts; the three known statuses are always present, others only while their count is positive.
+     */
+    private static final class StatusCounts {
+        private final Map<String, Integer> counts;
+
+        StatusCounts() {
+            counts = new LinkedHashMap<>();
+        }
+
+        StatusCounts(StatusCounts other) {
+            counts = new LinkedHashMap<>(other.counts);
+        }
+
+        void add(String status, int delta) {
+            counts.merge(status, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+
+        Map<String, Integer> toMap() {
+            Map<String, Integer> results = new HashMap<>();
+            results.put("completed", 0);
+            results.put("failed", 0);
+            results.put("inprogress", 0);
+            results.putAll(counts);
+            return results;
+        }
+    }
+
+    private static final class CourseSummary {
+        private final StatusCounts statuses;
+        private final Map<Integer, Integer> grades;
+        private final TreeMap<LocalDate, Integer> completionDates;
+        private LocalDate startDate;
+        private LocalDate endDate;
+
+        CourseSummary() {
+            statuses = new StatusCounts();
+            grades = new HashMap<>();
+            completionDates = new TreeMap<>();
+        }
+
+        CourseSummary(CourseSummary other) {
+            statuses = new StatusCounts(other.statuses);
+            grades = new HashMap<>(other.grades);
+            completionDates = new TreeMap<>(other.completionDates);
+            startDate = other.startDate;
+            endDate = other.endDate;
+        }
+
+        void add(CourseRecord record) {
+            startDate = record.getStartDate();
+            endDate = record.getEndDate();
+            update(record, 1);
+        }
+
+        void remove(CourseRecord record) {
+            update(record, -1);
+        }
+
+        private void update(CourseRecord record, int delta) {
+            statuses.add(record.getStatus(), delta);
+            if ("completed".equals(record.getStatus()) && record.getGrade() != null) {
+                grades.merge(record.getGrade(), delta, (a, b) -> a + b == 0 ? null : a + b);
+                completionDates.merge(record.getCompletionDate(), delta, (a, b) -> a + b == 0 ? null : a + b);
+            }
+        }
+
+        CourseDTO toDto(String courseName) {
+            return new CourseDTO(courseName, startDate, endDate, statuses.toMap(), new HashMap<>(grades),
+                    completionDates.isEmpty() ? null : completionDates.firstKey(),
+                    completionDates.isEmpty() ? null : completionDates.lastKey());
+        }
+    }
+
+    private static final class UserSummary {
+        private final StatusCounts statuses;
+        private String firstName;
+        private String lastName;
+        private long gradeSum;
+        private int gradeCount;
+
+        UserSummary() {
+            statuses = new StatusCounts();
+        }
+
+        UserSummary(UserSummary other) {
+            statuses = new StatusCounts(other.statuses);
+            firstName = other.firstName;
+            lastName = other.lastName;
+            gradeSum = other.gradeSum;
+            gradeCount = other.gradeCount;
+        }
+
+        void add(CourseRecord record) {
+            firstName = record.getFirstName();
+            lastName = record.getLastName();
+            update(record, 1);
+        }
+
+        void remove(CourseRecord record) {
+            update(record, -1);
+        }
+
+        private void update(CourseRecord record, int delta) {
+            statuses.add(record.getStatus(), delta);
+            if ("completed".equals(record.getStatus()) && record.getGrade() != null) {
+                gradeSum += (long) delta * record.getGrade();
+                gradeCount += delta;
+            }
+        }
+
+        UserDTO toDto(String email) {
+            Double gradeAvg = gradeCount == 0 ? null : (double) gradeSum / gradeCount;
+            return new UserDTO(firstName, lastName, email, statuses.toMap(), gradeAvg);
+        }
+    }
+}
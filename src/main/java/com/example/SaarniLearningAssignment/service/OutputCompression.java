@@ -0,0 +1,43 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression applied on top of the output format, selected with {@code app.output.compression}.
+ * The suffix is appended to the format's extension, e.g. {@code course_results.json.gz}.
+ */
+public enum OutputCompression {
+    NONE(""),
+    GZIP(".gz"),
+    ZSTD(".zst");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int ZSTD_LEVEL = 3;
+
+    private final String suffix;
+
+    OutputCompression(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String suffix() {
+        return suffix;
+    }
+
+    /**
+     * Wraps a raw file stream in a buffered, compressing stream. Closing the result finishes
+     * the compressed stream and closes the file.
+     */
+    OutputStream wrap(OutputStream out) throws IOException {
+        return switch (this) {
+            case NONE -> new BufferedOutputStream(out, BUFFER_SIZE);
+            case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE);
+            case ZSTD -> new ZstdOutputStream(new BufferedOutputStream(out, BUFFER_SIZE), ZSTD_LEVEL);
+        };
+    }
+}
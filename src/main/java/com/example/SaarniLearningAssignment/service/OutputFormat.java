@@ -0,0 +1,44 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encoding of the output files, selected with {@code app.output.format}.
+ *
+ * - JSON: one JSON array per file, indented unless {@code app.output.pretty=false}
+ * - NDJSON: one compact JSON object per line, so consumers can stream the file
+ * - SMILE / CBOR: binary encodings of the same array, read back with Jackson's dataformat modules
+ */
+public enum OutputFormat {
+    JSON(".json"),
+    NDJSON(".ndjson"),
+    SMILE(".smile"),
+    CBOR(".cbor");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * Whether each element is written as its own line instead of as an element of one array.
+     */
+    boolean isLineDelimited() {
+        return this == NDJSON;
+    }
+
+    JsonFactory createFactory() {
+        return switch (this) {
+            case SMILE -> new SmileFactory();
+            case CBOR -> new CBORFactory();
+            default -> new JsonFactory();
+        };
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.CourseDTO;
+import com.example.SaarniLearningAssignment.dto.ResultDTO;
+import com.example.SaarniLearningAssignment.dto.UserDTO;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared serialization for the output files.
+ *
+ * The mapper is configured once (Java time support, ISO dates, snake_case) and kept private, so
+ * the JSON used by the REST API is not affected. Writers are immutable and thread-safe:
+ * - One {@link ObjectWriter} per DTO type, created on first use and shared by all concurrent runs
+ * - Serializers stay cached in the mapper between files instead of being rebuilt for every file
+ * - Indentation is controlled by {@code app.output.pretty}; compact output is roughly half the size
+ * - The encoding ({@link OutputFormat}) and compression ({@link OutputCompression}) are chosen per run
+ *   through {@code app.output.format} and {@code app.output.compression}
+ */
+@Service
+public class OutputSerializer {
+
+    private final ObjectMapper mapper;
+    private final ObjectMapper jsonMapper;
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final boolean pretty;
+    private final OutputFormat format;
+    private final OutputCompression compression;
+
+    public OutputSerializer(@Value("${app.output.pretty}") boolean pretty,
+                            @Value("${app.output.format}") OutputFormat format,
+                            @Value("${app.output.compression}") OutputCompression compression) {
+        this.pretty = pretty;
+        this.format = format;
+        this.compression = compression;
+        this.mapper = createMapper(format.createFactory());
+        this.jsonMapper = format == OutputFormat.JSON ? mapper : createMapper();
+    }
+
+    /**
+     * The mapper configuration used for all JSON output files; also used by benchmarks for comparison.
+     */
+    static ObjectMapper createMapper() {
+        return createMapper(new JsonFactory());
+    }
+
+    private static ObjectMapper createMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        return mapper;
+    }
+
+    /**
+     * File name for an output with the given base name, e.g. {@code course_results.json.gz}.
+     */
+    public String fileName(String baseName) {
+        return baseName + format.extension() + compression.suffix();
+    }
+
+    /**
+     * Describes the settings that change the bytes of the output files, e.g. {@code json/none/pretty}.
+     * Outputs written with different settings must not be reused for each other.
+     */
+    public String settings() {
+        return format.name().toLowerCase() + "/" + compression.name().toLowerCase() + "/" + (pretty ? "pretty" : "compact");
+    }
+
+    /**
+     * Returns the shared writer for elements of the given type.
+     */
+    public ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, this::createWriter);
+    }
+
+    /**
+     * Streams the values into the file one element at a time: as a single array, or one line per
+     * element for NDJSON. For JSON the output is the same as writing the whole list with a single
+     * {@code writeValue} call.
+     *
+     * @return number of elements written
+     */
+    public <T> long writeAll(Path file, Class<T> type, Iterable<? extends T> values) throws IOException {
+        long count = 0;
+        ObjectWriter writer = writerFor(type);
+        try (OutputStream out = open(file)) {
+            if (format.isLineDelimited()) {
+                try (JsonGenerator generator = writer.createGenerator(out)) {
+                    for (T value : values) {
+                        writer.writeValue(generator, value);
+                        count++;
+                    }
+                    if (count > 0) {
+                        generator.writeRaw('\n');
+                    }
+                }
+            } else {
+                try (SequenceWriter sequence = writer.writeValuesAsArray(out)) {
+                    for (T value : values) {
+                        sequence.write(value);
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the three summaries as one compact JSON object with {@code courses}, {@code users} and
+     * {@code results} arrays, using the same field names and date format as the output files.
+     * Always JSON, whatever the configured file format; used for HTTP responses. The stream is left open.
+     */
+    public void writeJsonSummary(OutputStream out, List<CourseDTO> courses, List<UserDTO> users,
+                                 Iterable<ResultDTO> results) throws IOException {
+        ObjectWriter writer = jsonMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try (JsonGenerator generator = writer.createGenerator(out)) {
+            generator.writeStartObject();
+            writeField(writer, generator, "courses", courses);
+            writeField(writer, generator, "users", users);
+            writeField(writer, generator, "results", results);
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeField(ObjectWriter writer, JsonGenerator generator, String name,
+                                   Iterable<?> values) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (Object value : values) {
+            writer.writeValue(generator, value);
+        }
+        generator.writeEndArray();
+    }
+
+    private OutputStream open(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        try {
+            return compression.wrap(out);
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    private ObjectWriter createWriter(Class<?> type) {
+        ObjectWriter writer = mapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        if (format.isLineDelimited()) {
+            // Root values are separated by newlines; the last line is terminated explicitly
+            return writer.withRootValueSeparator("\n");
+        }
+        return pretty ? writer.with(SerializationFeature.INDENT_OUTPUT) : writer;
+    }
+}
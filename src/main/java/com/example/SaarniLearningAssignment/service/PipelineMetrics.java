@@ -0,0 +1,235 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.RejectReason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer meters for the processing pipeline, exposed through the actuator metrics and
+ * prometheus endpoints.
+ *
+ * - {@code csv.parse.stage} timer per stage (read, parse, validate, dedup), recorded once per file
+ * - {@code csv.input.bytes} counter of CSV file bytes read
+ * - {@code csv.rows.accepted} and {@code csv.rows.rejected} (tagged by reason) counters
+ * - {@code csv.records.replaced} counter for older attempts replaced during deduplication
+ * - {@code csv.summarize} timer per step and {@code json.write} timer per output file
+ * - {@code csv.files.processed} counter per outcome, and the backlog gauge registered by {@link FileWatcherService}
+ * - {@code csv.files.admitted} counter per memory mode (standard, low-memory), and the budget and reserved
+ *   gauges registered by {@link MemoryBudget}
+ * - {@code csv.queue.wait} timer of the time files wait for a worker, {@code csv.queue.rejected} counter of
+ *   uploads refused while the queue is full, and the depth, capacity and in-flight gauges registered by
+ *   {@link IngestionQueue}
+ *
+ * Stage times are summed per file (or per chunk in parallel mode) by a {@link ParseTimings}
+ * and recorded when the file is done. Only every {@value ParseTimings#SAMPLE_INTERVAL}th row is
+ * timed and its times are scaled up, so the hot loop reads the clock on few rows.
+ */
+@Service
+public class PipelineMetrics {
+
+    /**
+     * Stages of the per-row loop.
+     *
+     * - READ: tokenizing the next row from the CSV
+     * - PARSE: mapping the row to a record (types, required fields)
+     * - VALIDATE: the completion date range check
+     * - DEDUP: offering the record to the deduplication state
+     */
+    public enum Stage { READ, PARSE, VALIDATE, DEDUP }
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<RejectReason, Counter> rejected = new EnumMap<>(RejectReason.class);
+    private final Counter accepted;
+    private final Counter replaced;
+    private final Counter bytesRead;
+    private final Timer queueWait;
+    private final Counter uploadsRefused;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("csv.parse.stage")
+                    .description("Time spent per stage while reading CSV files")
+                    .tag("stage", tagValue(stage))
+                    .register(registry));
+        }
+        for (RejectReason reason : RejectReason.values()) {
+            rejected.put(reason, Counter.builder("csv.rows.rejected")
+                    .description("CSV rows skipped as invalid")
+                    .tag("reason", tagValue(reason))
+                    .register(registry));
+        }
+        this.accepted = Counter.builder("csv.rows.accepted")
+                .description("CSV rows that passed validation")
+                .register(registry);
+        this.replaced = Counter.builder("csv.records.replaced")
+                .description("Records that replaced an older attempt for the same user and course")
+                .register(registry);
+        this.bytesRead = Counter.builder("csv.input.bytes")
+                .description("Bytes of CSV files read from disk")
+                .baseUnit("bytes")
+                .register(registry);
+        this.queueWait = Timer.builder("csv.queue.wait")
+                .description("Time CSV files wait in the ingestion queue before a worker takes them")
+                .register(registry);
+        this.uploadsRefused = Counter.builder("csv.queue.rejected")
+                .description("Uploads refused because the ingestion queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Records the stage times and row counts of one parsed file.
+     */
+    public void recordParse(ParseTimings timings, int acceptedRows, long replacedRecords) {
+        for (Stage stage : Stage.values()) {
+            stageTimers.get(stage).record(timings.nanos[stage.ordinal()], TimeUnit.NANOSECONDS);
+        }
+        for (RejectReason reason : RejectReason.values()) {
+            rejected.get(reason).increment(timings.rejected[reason.ordinal()]);
+        }
+        accepted.increment(acceptedRows);
+        replaced.increment(replacedRecords);
+    }
+
+    /**
+     * Counts the size of a CSV file that has been parsed.
+     */
+    public void bytesRead(long bytes) {
+        bytesRead.increment(bytes);
+    }
+
+    /**
+     * Times one summarize step (all, courses, users or results).
+     */
+    public <T> T timeSummarize(String step, Supplier<T> work) {
+        return Timer.builder("csv.summarize")
+                .description("Time spent building summaries")
+                .tag("step", step)
+                .register(registry)
+                .record(work);
+    }
+
+    /**
+     * Records the time spent writing one output file, tagged with its base name.
+     */
+    public void recordWrite(String baseName, long nanos) {
+        Timer.builder("json.write")
+                .description("Time spent writing an output file")
+                .tag("file", baseName)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a file leaving the pipeline (done, cached or error).
+     */
+    public void fileProcessed(String outcome) {
+        Counter.builder("csv.files.processed")
+                .description("CSV files processed from the input folder")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Counts a file admitted to processing by the {@link MemoryBudget}, tagged with its mode.
+     */
+    public void fileAdmitted(String mode) {
+        Counter.builder("csv.files.admitted")
+                .description("CSV files admitted to parsing, by memory mode")
+                .tag("mode", mode)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Records how long a file waited in the ingestion queue.
+     */
+    public void recordQueueWait(long nanos) {
+        queueWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts an upload refused with 429 because the ingestion queue was full.
+     */
+    public void uploadRefused() {
+        uploadsRefused.increment();
+    }
+
+    /**
+     * Registers a gauge that is sampled from the given object whenever the metrics are read.
+     */
+    public <T> void gauge(String name, String description, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(name, target, value).description(description).register(registry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Stage times and rejected-row counts of one file or chunk. Not thread-safe; chunks are
+     * timed separately and added together.
+     *
+     * Reading the clock several times per row is a measurable part of a row's cost, so stage
+     * times are sampled: every {@value #SAMPLE_INTERVAL}th row is timed, and its times count
+     * for the rows in between.
+     */
+    public static final class ParseTimings {
+        static final int SAMPLE_INTERVAL = 16;
+
+        private final long[] nanos = new long[Stage.values().length];
+        private final long[] rejected = new long[RejectReason.values().length];
+        private long rows;
+        private boolean sampled;
+
+        /**
+         * Starts the next row, timing it if it is a sampled one.
+         *
+         * @return the current {@link System#nanoTime()} for a sampled row, to pass as {@code since}
+         *         for its first stage; 0 otherwise
+         */
+        public long startRow() {
+            sampled = rows++ % SAMPLE_INTERVAL == 0;
+            return sampled ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Adds the time since {@code since} to the stage, if the current row is sampled.
+         *
+         * @return the current {@link System#nanoTime()}, to pass as {@code since} for the next stage
+         */
+        public long lap(Stage stage, long since) {
+            if (!sampled) {
+                return since;
+            }
+            long now = System.nanoTime();
+            nanos[stage.ordinal()] += (now - since) * SAMPLE_INTERVAL;
+            return now;
+        }
+
+        public void reject(RejectReason reason) {
+            rejected[reason.ordinal()]++;
+        }
+
+        public void add(ParseTimings other) {
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] += other.nanos[i];
+            }
+            for (int i = 0; i < rejected.length; i++) {
+                rejected[i] += other.rejected[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.JobStatusDTO;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Lifecycle of one CSV file from upload (or detection) to its output folder.
+ *
+ * - QUEUED: stored in the input folder, waiting for a worker
+ * - PARSING: being read, validated and deduplicated
+ * - WRITING: output files being written (or cached outputs of an identical file being linked)
+ * - DONE / ERROR: finished; the job keeps its counts, timings and output folder or error message
+ *
+ * State changes are thread-safe. Listeners receive a snapshot after every change, outside the lock.
+ */
+public class ProcessingJob {
+
+    public enum State {
+        QUEUED, PARSING, WRITING, DONE, ERROR;
+
+        public boolean isFinished() {
+            return this == DONE || this == ERROR;
+        }
+    }
+
+    private final String id;
+    private final String fileName;
+    private final Instant createdAt = Instant.now();
+    private final List<Consumer<JobStatusDTO>> listeners = new ArrayList<>();
+    private final CompletableFuture<JobStatusDTO> completion = new CompletableFuture<>();
+
+    private State state = State.QUEUED;
+    private Instant startedAt;
+    private Instant writingAt;
+    private Instant finishedAt;
+    private CsvProcessingService.ParseStats stats;
+    private Path outputFolder;
+    private boolean cacheHit;
+    private String error;
+
+    ProcessingJob(String id, String fileName) {
+        this.id = id;
+        this.fileName = fileName;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    synchronized Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void parsing() {
+        update(() -> {
+            state = State.PARSING;
+            startedAt = Instant.now();
+        });
+    }
+
+    void parsed(CsvProcessingService.ParseStats stats) {
+        update(() -> this.stats = stats);
+    }
+
+    void writing() {
+        update(() -> {
+            state = State.WRITING;
+            writingAt = Instant.now();
+        });
+    }
+
+    /**
+     * Marks the job as served from the {@link ResultCache}, with the counts of the earlier parse.
+     */
+    void reused(CsvProcessingService.ParseStats stats) {
+        update(() -> {
+            this.stats = stats;
+            cacheHit = true;
+            state = State.WRITING;
+            writingAt = Instant.now();
+        });
+    }
+
+    void done(Path outputFolder) {
+        update(() -> {
+            state = State.DONE;
+            finishedAt = Instant.now();
+            this.outputFolder = outputFolder;
+        });
+    }
+
+    void failed(String message) {
+        update(() -> {
+            state = State.ERROR;
+            finishedAt = Instant.now();
+            error = message;
+        });
+    }
+
+    /**
+     * Completes with the final snapshot once the job is done or has failed.
+     */
+    public CompletableFuture<JobStatusDTO> completion() {
+        return completion;
+    }
+
+    /**
+     * Registers a listener and immediately sends it the current snapshot.
+     *
+     * @return action that removes the listener again
+     */
+    public Runnable subscribe(Consumer<JobStatusDTO> listener) {
+        JobStatusDTO current;
+        synchronized (this) {
+            current = snapshot();
+            if (!state.isFinished()) {
+                listeners.add(listener);
+            }
+        }
+        listener.accept(current);
+        return () -> {
+            synchronized (this) {
+                listeners.remove(listener);
+            }
+        };
+    }
+
+    public synchronized JobStatusDTO snapshot() {
+        Instant parseEnd = writingAt != null ? writingAt : finishedAt;
+        return new JobStatusDTO(id, fileName, state.name().toLowerCase(), createdAt, startedAt, finishedAt,
+                millisBetween(createdAt, startedAt),
+                startedAt != null ? millisBetween(startedAt, parseEnd) : null,
+                millisBetween(writingAt, finishedAt),
+                stats != null ? stats.rows() : null,
+                stats != null ? stats.validRows() : null,
+                stats != null ? stats.records() : null,
+                outputFolder != null ? outputFolder.toString() : null,
+                cacheHit,
+                error);
+    }
+
+    private void update(Runnable change) {
+        JobStatusDTO current;
+        List<Consumer<JobStatusDTO>> targets;
+        synchronized (this) {
+            if (state.isFinished()) {
+                return;
+            }
+            change.run();
+            current = snapshot();
+            targets = List.copyOf(listeners);
+            if (state.isFinished()) {
+                listeners.clear();
+            }
+        }
+        targets.forEach(listener -> listener.accept(current));
+        if (current.getFinishedAt() != null) {
+            completion.complete(current);
+        }
+    }
+
+    private static Long millisBetween(Instant from, Instant to) {
+        return from != null && to != null ? Duration.between(from, to).toMillis() : null;
+    }
+}
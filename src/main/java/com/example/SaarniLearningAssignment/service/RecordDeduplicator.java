@@ -0,0 +1,127 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.example.SaarniLearningAssignment.model.UserCourseKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental deduplication state for a single processing run.
+ *
+ * Records are offered one at a time while the CSV is being read, so the memory held
+ * grows with the number of distinct user+course combinations instead of the number of rows.
+ *
+ * - Uses email and course name as the identifiers, as a {@link UserCourseKey}
+ * - Keeps only the latest attempt per user-course combination
+ * - Prefers completed > failed > inprogress when dates are the same
+ */
+public class RecordDeduplicator implements MergeableDeduplicationState<RecordDeduplicator> {
+    private static final Logger logger = LoggerFactory.getLogger(RecordDeduplicator.class);
+
+    /**
+     * Marker for a missing completion date in epoch-day form.
+     */
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final Map<UserCourseKey, CourseRecord> latestByUserCourse = new HashMap<>();
+
+    /**
+     * Offers a validated record to the deduplication state.
+     *
+     * @return true if the record was stored (new key or replaced an older attempt)
+     */
+    @Override
+    public boolean offer(CourseRecord record) {
+        UserCourseKey key = UserCourseKey.of(record);
+        CourseRecord existing = latestByUserCourse.get(key);
+
+        if (existing == null) {
+            latestByUserCourse.put(key, record);
+            logger.debug("Adding new entry: {}", key);
+            return true;
+        }
+
+        // Replace if newer or same date with higher status priority
+        if (supersedes(record, existing)) {
+            logger.debug("Replacing entry: {} | Old status: {} -> New status: {}", key, existing.getStatus(), record.getStatus());
+            latestByUserCourse.put(key, record);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merges the winners of another deduplication state into this one using the same rule.
+     *
+     * Merging states built from consecutive parts of a file, in file order, gives the same
+     * result as offering every row of those parts to a single state.
+     */
+    @Override
+    public int mergeFrom(RecordDeduplicator other) {
+        int stored = 0;
+        for (CourseRecord record : other.latestByUserCourse.values()) {
+            if (offer(record)) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Number of distinct user+course combinations seen so far.
+     */
+    @Override
+    public int size() {
+        return latestByUserCourse.size();
+    }
+
+    /**
+     * Returns the deduplicated records.
+     */
+    @Override
+    public List<CourseRecord> records() {
+        return new ArrayList<>(latestByUserCourse.values());
+    }
+
+    /**
+     * Returns true if the candidate record should replace the existing one for the same user+course.
+     */
+    static boolean supersedes(CourseRecord candidate, CourseRecord existing) {
+        LocalDate newDate = candidate.getCompletionDate();
+        LocalDate oldDate = existing.getCompletionDate();
+
+        boolean newIsLater = newDate != null && (oldDate == null || newDate.isAfter(oldDate));
+        boolean sameDate = newDate != null && newDate.equals(oldDate);
+
+        return newIsLater || (sameDate && statusPriority(candidate.getStatus()) > statusPriority(existing.getStatus()));
+    }
+
+    /**
+     * The same rule as {@link #supersedes(CourseRecord, CourseRecord)} on completion dates stored
+     * as epoch days, with {@link #NO_DATE} for a missing date.
+     */
+    static boolean supersedes(int newDay, String newStatus, int oldDay, String oldStatus) {
+        boolean newIsLater = newDay != NO_DATE && (oldDay == NO_DATE || newDay > oldDay);
+        boolean sameDate = newDay != NO_DATE && newDay == oldDay;
+
+        return newIsLater || (sameDate && statusPriority(newStatus) > statusPriority(oldStatus));
+    }
+
+    /**
+     * Maps course status to numeric priority for deduplication purposes priorizing completed courses.
+     */
+    static int statusPriority(String status) {
+        return switch (status) {
+            case "completed" -> 3;
+            case "failed" -> 2;
+            case "inprogress" -> 1;
+            default -> 0;
+        };
+    }
+}
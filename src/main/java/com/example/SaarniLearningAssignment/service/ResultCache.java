@@ -0,0 +1,360 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.CacheStatsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of output folders, keyed by the content of the CSV file they were produced from.
+ * A file that was processed before is published again without being parsed.
+ *
+ * - The key is a SHA-256 hash of the CSV bytes combined with {@link OutputSerializer#settings()}, so changing
+ *   the output format, compression or indentation never reuses files written with other settings
+ * - Uploads are hashed while they are stored ({@link #digesting}); files dropped in manually are hashed by the worker
+ * - Merge and database mode need every file parsed and applied, so the cache is bypassed there and
+ *   nothing is hashed ({@link #isActive})
+ * - Each entry is a folder under {@code app.cache.folder} with hard links to the output files (copies where links
+ *   are not supported) and the parse counts, so entries survive restarts and take no extra space while the
+ *   original output folder still exists
+ * - Entries unused for {@code app.cache.max-age} milliseconds are evicted, then the least recently used ones
+ *   until the total size is within {@code app.cache.max-size}
+ *
+ * Output files share their data with the cache, so they must not be modified in place.
+ */
+@Service
+public class ResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+
+    // Part of every key; bump it when the output of the same CSV and settings changes
+    private static final String KEY_VERSION = "v1";
+    private static final String ENTRY_FILE = "entry.properties";
+
+    @Value("${app.cache.enabled}")
+    private boolean enabled;
+    @Value("${app.merge.enabled}")
+    private boolean mergeEnabled;
+    @Value("${app.db.enabled}")
+    private boolean dbEnabled;
+    @Value("${app.cache.folder}")
+    private String cacheFolder;
+    @Value("${app.cache.max-size}")
+    private long maxSizeBytes;
+    @Value("${app.cache.max-age}")
+    private long maxAgeMillis;
+
+    private final JsonWriterService jsonWriterService;
+    private final OutputSerializer outputSerializer;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Path, UploadDigest> uploadDigests = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResultCache(JsonWriterService jsonWriterService, OutputSerializer outputSerializer) {
+        this.jsonWriterService = jsonWriterService;
+        this.outputSerializer = outputSerializer;
+    }
+
+    /**
+     * Cached output folder and the counts of the parse that produced it.
+     */
+    public record Hit(Path folder, CsvProcessingService.ParseStats stats) {
+    }
+
+    private static final class Entry {
+        final Path folder;
+        final long sizeBytes;
+        final CsvProcessingService.ParseStats stats;
+        volatile long lastUsed;
+
+        Entry(Path folder, long sizeBytes, CsvProcessingService.ParseStats stats, long lastUsed) {
+            this.folder = folder;
+            this.sizeBytes = sizeBytes;
+            this.stats = stats;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private record UploadDigest(String hash, long size, FileTime modified) {
+    }
+
+    /**
+     * Loads the entries kept from earlier runs and removes unfinished or unreadable ones.
+     */
+    @PostConstruct
+    public void loadEntries() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path root = Paths.get(cacheFolder);
+        Files.createDirectories(root);
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String key = dir.getFileName().toString();
+                try {
+                    if (key.startsWith(".")) {
+                        throw new IOException("unfinished entry");
+                    }
+                    entries.put(key, readEntry(dir));
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Removing cache entry {}: {}", key, e.getMessage());
+                    JsonWriterService.deleteRecursively(dir);
+                }
+            }
+        }
+        evict();
+        logger.info("Result cache holds {} entries ({} bytes)", entries.size(), totalSize());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether files are looked up in the cache: it is enabled and neither merge nor database mode is on.
+     */
+    public boolean isActive() {
+        return enabled && !mergeEnabled && !dbEnabled;
+    }
+
+    /**
+     * Wraps an upload so its content hash is computed while it is being stored, or returns it as
+     * it is if the cache is not active. Pass the stream to {@link #rememberUpload} once the file
+     * has been written.
+     */
+    public InputStream digesting(InputStream in) {
+        return isActive() ? new DigestInputStream(in, sha256()) : in;
+    }
+
+    /**
+     * Remembers the hash of a stored upload, so the worker does not have to read the file twice.
+     * The hash is only used while the file keeps the size and modification time it has now.
+     *
+     * @param in the stream returned by {@link #digesting}; nothing is remembered if it was not hashed
+     */
+    public void rememberUpload(Path file, InputStream in) throws IOException {
+        if (!(in instanceof DigestInputStream digesting)) {
+            return;
+        }
+        uploadDigests.put(file.toAbsolutePath().normalize(), new UploadDigest(
+                HexFormat.of().formatHex(digesting.getMessageDigest().digest()),
+                Files.size(file), Files.getLastModifiedTime(file)));
+    }
+
+    /**
+     * Drops the remembered upload hash of a file the worker is done with, for the files for which
+     * {@link #keyFor} is never called (e.g. one that failed before it).
+     */
+    public void forgetUpload(Path file) {
+        uploadDigests.remove(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the cache key for a CSV file, reusing the hash taken during its upload when possible.
+     */
+    public String keyFor(Path file) throws IOException {
+        UploadDigest upload = uploadDigests.remove(file.toAbsolutePath().normalize());
+        String contentHash;
+        if (upload != null && upload.size() == Files.size(file)
+                && upload.modified().equals(Files.getLastModifiedTime(file))) {
+            contentHash = upload.hash();
+        } else {
+            contentHash = hashFile(file);
+        }
+        MessageDigest digest = sha256();
+        digest.update((KEY_VERSION + "/" + outputSerializer.settings() + "/" + contentHash)
+                .getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Looks up the outputs for a key and marks the entry as used.
+     */
+    public Optional<Hit> lookup(String key) {
+        Entry entry = entries.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null && now - entry.lastUsed > maxAgeMillis) {
+            remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        entry.lastUsed = now;
+        try {
+            // Keeps the least-recently-used order across restarts
+            Files.setLastModifiedTime(entry.folder, FileTime.fromMillis(now));
+        } catch (IOException e) {
+            logger.debug("Could not touch cache entry {}: {}", key, e.getMessage());
+        }
+        hits.incrementAndGet();
+        return Optional.of(new Hit(entry.folder, entry.stats));
+    }
+
+    /**
+     * Adds the files of a freshly written output folder under the given key. Failures are logged and
+     * otherwise ignored, since the outputs themselves have already been published.
+     */
+    public synchronized void store(String key, Path outputDir, CsvProcessingService.ParseStats stats) {
+        if (entries.containsKey(key)) {
+            return;
+        }
+        Path folder = Paths.get(cacheFolder, key);
+        Path staging = Paths.get(cacheFolder, "." + key + ".tmp");
+        try {
+            JsonWriterService.deleteRecursively(staging);
+            JsonWriterService.deleteRecursively(folder);
+            Files.createDirectories(staging);
+            long size = 0;
+            for (String name : jsonWriterService.outputFileNames()) {
+                Path target = staging.resolve(name);
+                JsonWriterService.linkOrCopy(outputDir.resolve(name), target);
+                size += Files.size(target);
+            }
+            writeStats(staging.resolve(ENTRY_FILE), stats);
+            Files.move(staging, folder, StandardCopyOption.ATOMIC_MOVE);
+            entries.put(key, new Entry(folder, size, stats, System.currentTimeMillis()));
+            stores.incrementAndGet();
+            logger.debug("Cached outputs of {} as {}", outputDir.getFileName(), key);
+        } catch (IOException e) {
+            logger.warn("Could not cache outputs of {}: {}", outputDir.getFileName(), e.getMessage());
+            try {
+                JsonWriterService.deleteRecursively(staging);
+            } catch (IOException cleanup) {
+                logger.debug("Could not remove {}: {}", staging, cleanup.getMessage());
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Drops an entry whose files turned out to be unusable.
+     */
+    public void invalidate(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            remove(key, entry);
+        }
+    }
+
+    public CacheStatsDTO stats() {
+        return new CacheStatsDTO(enabled, entries.size(), totalSize(), maxSizeBytes,
+                hits.get(), misses.get(), stores.get(), evictions.get());
+    }
+
+    /**
+     * Removes expired entries, then the least recently used ones while the cache is over its size limit.
+     */
+    private synchronized void evict() {
+        long now = System.currentTimeMillis();
+        entries.forEach((key, entry) -> {
+            if (now - entry.lastUsed > maxAgeMillis) {
+                remove(key, entry);
+            }
+        });
+        long total = totalSize();
+        if (total <= maxSizeBytes) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> byLastUse = new ArrayList<>(entries.entrySet());
+        byLastUse.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+        for (Map.Entry<String, Entry> e : byLastUse) {
+            if (total <= maxSizeBytes) {
+                break;
+            }
+            remove(e.getKey(), e.getValue());
+            total -= e.getValue().sizeBytes;
+        }
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (!entries.remove(key, entry)) {
+            return;
+        }
+        evictions.incrementAndGet();
+        try {
+            JsonWriterService.deleteRecursively(entry.folder);
+        } catch (IOException e) {
+            logger.warn("Could not delete cache entry {}: {}", entry.folder, e.getMessage());
+        }
+    }
+
+    private long totalSize() {
+        return entries.values().stream().mapToLong(entry -> entry.sizeBytes).sum();
+    }
+
+    private Entry readEntry(Path dir) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(dir.resolve(ENTRY_FILE))) {
+            properties.load(reader);
+        }
+        CsvProcessingService.ParseStats stats = new CsvProcessingService.ParseStats(
+                Integer.parseInt(properties.getProperty("rows")),
+                Integer.parseInt(properties.getProperty("valid_rows")),
+                Integer.parseInt(properties.getProperty("records")));
+        long size = 0;
+        for (String name : jsonWriterService.outputFileNames()) {
+            size += Files.size(dir.resolve(name));
+        }
+        return new Entry(dir, size, stats, Files.getLastModifiedTime(dir).toMillis());
+    }
+
+    private static void writeStats(Path file, CsvProcessingService.ParseStats stats) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("rows", String.valueOf(stats.rows()));
+        properties.setProperty("valid_rows", String.valueOf(stats.validRows()));
+        properties.setProperty("records", String.valueOf(stats.records()));
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, null);
+        }
+    }
+
+    private static String hashFile(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
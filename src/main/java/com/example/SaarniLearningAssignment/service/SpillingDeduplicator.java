@@ -0,0 +1,557 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.example.SaarniLearningAssignment.model.StringPool;
+import com.example.SaarniLearningAssignment.model.UserCourseKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.AbstractSequentialList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deduplication state that moves to local disk once it holds more keys than fit its memory threshold.
+ *
+ * - Below the threshold the winners are kept in a {@link CourseRecordBatch}, which is also the returned list
+ * - On crossing it, the winners so far are written to hash partitions in a temporary folder, and every
+ *   later row is appended to its partition undecided
+ * - {@link #records()} deduplicates each partition on its own with the same rule, sorts the winners into
+ *   {@code HashMap} iteration order (bucket for the final table size, then first-seen order, as in
+ *   {@link CourseRecordBatch}), and merges the partitions into one file that the returned list streams
+ *
+ * The records and their order are the same as with the in-memory states. The partitions are deleted when
+ * {@link #records()} finishes or fails; the merged file when the returned list or this state is closed.
+ *
+ * Not thread-safe; used for sequential parsing only.
+ */
+public class SpillingDeduplicator implements DeduplicationState, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillingDeduplicator.class);
+
+    // Peak heap per key of the in-memory CourseRecordBatch, measured, with headroom
+    static final long BYTES_PER_KEY = 64;
+    // Distinct values pooled while streaming the records of a spilled file; later values are not pooled
+    static final int POOL_LIMIT = 1 << 16;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int NO_GRADE = Integer.MIN_VALUE;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path spillFolder;
+    private final int partitionCount;
+    private final long maxKeysInMemory;
+
+    private CourseRecordBatch winners = new CourseRecordBatch();
+    private long sequence;
+    private long spillStart = -1;
+    private Path dir;
+    private DataOutputStream[] partitions;
+    private int size;
+    private int lateDiscards;
+    private SpilledRecords spilled;
+
+    /**
+     * @param spillFolder     folder in which a temporary folder is created on spilling
+     * @param partitionCount  number of hash partitions; each is deduplicated in memory on its own
+     * @param memoryThreshold heap (in bytes) the in-memory winners may use before spilling
+     */
+    public SpillingDeduplicator(Path spillFolder, int partitionCount, long memoryThreshold) {
+        this.spillFolder = spillFolder;
+        this.partitionCount = partitionCount;
+        this.maxKeysInMemory = Math.max(1, memoryThreshold / BYTES_PER_KEY);
+    }
+
+    private static final class Winner {
+        private CourseRecord record;
+        private final long firstSeen;
+
+        private Winner(CourseRecord record, long firstSeen) {
+            this.record = record;
+            this.firstSeen = firstSeen;
+        }
+    }
+
+    /**
+     * Stores the record if it supersedes the current winner; once spilled, appends it to its partition
+     * and reports it as stored (see {@link #getLateDiscards()}).
+     */
+    @Override
+    public boolean offer(CourseRecord record) {
+        long seq = sequence++;
+        if (partitions != null) {
+            write(partitions[partition(UserCourseKey.of(record))], seq, record);
+            return true;
+        }
+        boolean stored = winners.offer(record);
+        if (winners.size() > maxKeysInMemory) {
+            spill();
+        }
+        return stored;
+    }
+
+    /**
+     * Records are copied into the in-memory batch, or written to a partition once spilled.
+     */
+    @Override
+    public boolean copiesOffered() {
+        return true;
+    }
+
+    /**
+     * Distinct keys; once spilled, only known after {@link #records()}.
+     */
+    @Override
+    public int size() {
+        return partitions == null && spilled == null ? winners.size() : size;
+    }
+
+    /**
+     * Offers reported as stored after spilling that turned out not to supersede the winner of their key.
+     */
+    public int getLateDiscards() {
+        return lateDiscards;
+    }
+
+    @Override
+    public List<CourseRecord> records() {
+        if (partitions == null && spilled == null) {
+            return winners;
+        }
+        if (spilled == null) {
+            try {
+                spilled = mergePartitions();
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Failed to deduplicate spilled records", e);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * Deletes the temporary folder, including the merged file behind {@link #records()}.
+     */
+    @Override
+    public void close() {
+        closePartitions();
+        if (spilled != null) {
+            spilled.closeStreams();
+        }
+        if (dir != null) {
+            try {
+                JsonWriterService.deleteRecursively(dir);
+            } catch (IOException e) {
+                logger.warn("Failed to delete spilled records in {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    private int partition(UserCourseKey key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), partitionCount);
+    }
+
+    /**
+     * Writes the winners so far to their partitions and continues on disk.
+     */
+    private void spill() {
+        try {
+            Files.createDirectories(spillFolder);
+            dir = Files.createTempDirectory(spillFolder, "dedup-");
+            partitions = new DataOutputStream[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(partitionFile(i)), BUFFER_SIZE));
+            }
+            spillStart = sequence;
+            // Batch rows are numbered in first-seen order, below the sequence of any later row
+            for (int row = 0; row < winners.size(); row++) {
+                CourseRecord record = winners.recordAt(row);
+                write(partitions[partition(UserCourseKey.of(record))], row, record);
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Failed to spill records to " + spillFolder, e);
+        }
+        logger.info("Deduplication passed {} keys, spilling to {} partitions in {}", winners.size(), partitionCount, dir);
+        winners = null;
+    }
+
+    /**
+     * Deduplicates every partition, sorts the winners of each into the order of a {@code HashMap}
+     * with all keys, and merges them into one file.
+     */
+    private SpilledRecords mergePartitions() throws IOException {
+        closePartitions();
+        int[] counts = new int[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            counts[i] = deduplicatePartition(i);
+            size += counts[i];
+        }
+        int tableSize = 16;
+        while (size > tableSize * 3 / 4) {
+            tableSize <<= 1;
+        }
+        for (int i = 0; i < partitionCount; i++) {
+            sortPartition(i, tableSize);
+        }
+        Path merged = dir.resolve("records.bin");
+        mergeSorted(merged, tableSize);
+        for (int i = 0; i < partitionCount; i++) {
+            Files.deleteIfExists(partitionFile(i));
+        }
+        logger.info("Deduplicated {} partitions down to {} records ({} rows appended after spilling)",
+                partitionCount, size, sequence - spillStart);
+        return new SpilledRecords(merged, size);
+    }
+
+    /**
+     * Replays one partition in row order through the deduplication rule and writes back its winners.
+     *
+     * @return the number of winners
+     */
+    private int deduplicatePartition(int index) throws IOException {
+        Map<UserCourseKey, Winner> partitionWinners = new HashMap<>();
+        StringPool strings = new StringPool();
+        try (DataInputStream in = open(partitionFile(index))) {
+            Row row;
+            while ((row = read(in, strings)) != null) {
+                UserCourseKey key = UserCourseKey.of(row.record);
+                Winner existing = partitionWinners.get(key);
+                if (existing == null) {
+                    partitionWinners.put(key, new Winner(row.record, row.seq));
+                } else if (RecordDeduplicator.supersedes(row.record, existing.record)) {
+                    existing.record = row.record;
+                } else if (row.seq >= spillStart) {
+                    lateDiscards++;
+                }
+            }
+        }
+        try (DataOutputStream out = create(partitionFile(index))) {
+            for (Winner winner : partitionWinners.values()) {
+                write(out, winner.firstSeen, winner.record);
+            }
+        }
+        return partitionWinners.size();
+    }
+
+    private void sortPartition(int index, int tableSize) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        StringPool strings = new StringPool();
+        try (DataInputStream in = open(partitionFile(index))) {
+            Row row;
+            while ((row = read(in, strings)) != null) {
+                row.order = orderKey(row, tableSize);
+                rows.add(row);
+            }
+        }
+        rows.sort(Comparator.comparingLong((Row row) -> row.order).thenComparingLong(row -> row.seq));
+        try (DataOutputStream out = create(partitionFile(index))) {
+            for (Row row : rows) {
+                write(out, row.seq, row.record);
+            }
+        }
+    }
+
+    private void mergeSorted(Path target, int tableSize) throws IOException {
+        Comparator<Head> order = Comparator.comparingLong((Head head) -> head.row.order).thenComparingLong(head -> head.row.seq);
+        PriorityQueue<Head> heads = new PriorityQueue<>(partitionCount, order);
+        List<DataInputStream> inputs = new ArrayList<>(partitionCount);
+        StringPool strings = new StringPool(POOL_LIMIT);
+        try (DataOutputStream out = create(target)) {
+            for (int i = 0; i < partitionCount; i++) {
+                DataInputStream in = open(partitionFile(i));
+                inputs.add(in);
+                advance(heads, new Head(in), strings, tableSize);
+            }
+            Head head;
+            while ((head = heads.poll()) != null) {
+                write(out, head.row.seq, head.row.record);
+                advance(heads, head, strings, tableSize);
+            }
+        } finally {
+            for (DataInputStream in : inputs) {
+                in.close();
+            }
+        }
+    }
+
+    private static void advance(PriorityQueue<Head> heads, Head head, StringPool strings, int tableSize) throws IOException {
+        head.row = read(head.in, strings);
+        if (head.row != null) {
+            head.row.order = orderKey(head.row, tableSize);
+            heads.add(head);
+        }
+    }
+
+    /**
+     * Bucket of the key in a {@code HashMap} table of the given size.
+     */
+    private static long orderKey(Row row, int tableSize) {
+        int h = UserCourseKey.hashOf(row.record.getEmail(), row.record.getCourseName());
+        return (h ^ (h >>> 16)) & (tableSize - 1);
+    }
+
+    private void closePartitions() {
+        if (partitions == null) {
+            return;
+        }
+        for (DataOutputStream out : partitions) {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to close spill partition: {}", e.getMessage());
+            }
+        }
+        partitions = null;
+    }
+
+    private Path partitionFile(int index) {
+        return dir.resolve("partition-" + index + ".bin");
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+    }
+
+    private static DataOutputStream create(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+    }
+
+    private static final class Row {
+        private final long seq;
+        private final CourseRecord record;
+        private long order;
+
+        private Row(long seq, CourseRecord record) {
+            this.seq = seq;
+            this.record = record;
+        }
+    }
+
+    private static final class Head {
+        private final DataInputStream in;
+        private Row row;
+
+        private Head(DataInputStream in) {
+            this.in = in;
+        }
+    }
+
+    private static void write(DataOutputStream out, long seq, CourseRecord record) {
+        try {
+            out.writeLong(seq);
+            writeString(out, record.getFirstName());
+            writeString(out, record.getLastName());
+            writeString(out, record.getEmail());
+            writeString(out, record.getCourseName());
+            writeDate(out, record.getStartDate());
+            writeDate(out, record.getEndDate());
+            writeString(out, record.getStatus());
+            out.writeInt(record.getGrade() == null ? NO_GRADE : record.getGrade());
+            writeDate(out, record.getCompletionDate());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write spilled record", e);
+        }
+    }
+
+    /**
+     * Reads the next row, or returns null at the end of the file.
+     */
+    private static Row read(DataInputStream in, StringPool strings) throws IOException {
+        long seq;
+        try {
+            seq = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        String firstName = readString(in, strings);
+        String lastName = readString(in, strings);
+        String email = readString(in, strings);
+        String courseName = readString(in, strings);
+        LocalDate start = readDate(in);
+        LocalDate end = readDate(in);
+        String status = readString(in, strings);
+        int grade = in.readInt();
+        LocalDate completion = readDate(in);
+        return new Row(seq, new CourseRecord(firstName, lastName, email, courseName, start, end, status,
+                grade == NO_GRADE ? null : grade, completion));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, StringPool strings) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Truncated spill file");
+        }
+        return strings.canonicalize(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeLong(date == null ? NO_DATE : date.toEpochDay());
+    }
+
+    private static LocalDate readDate(DataInputStream in) throws IOException {
+        long day = in.readLong();
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Read-only list of the deduplicated records, streamed from the merged file on each iteration.
+     * Several iterations may run at the same time. Closing it deletes the file.
+     */
+    public final class SpilledRecords extends AbstractSequentialList<CourseRecord> implements Closeable {
+        private final Path file;
+        private final int size;
+        private final Set<DataInputStream> open = ConcurrentHashMap.newKeySet();
+
+        private SpilledRecords(Path file, int size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public ListIterator<CourseRecord> listIterator(int index) {
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            RecordIterator iterator = new RecordIterator();
+            for (int i = 0; i < index; i++) {
+                iterator.next();
+            }
+            return iterator;
+        }
+
+        @Override
+        public void close() {
+            SpillingDeduplicator.this.close();
+        }
+
+        private void closeStreams() {
+            for (DataInputStream in : open) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close spilled records: {}", e.getMessage());
+                }
+            }
+            open.clear();
+        }
+
+        /**
+         * Forward-only iterator over the merged file; the file is opened on the first read.
+         */
+        private final class RecordIterator implements ListIterator<CourseRecord> {
+            private final StringPool strings = new StringPool(POOL_LIMIT);
+            private DataInputStream in;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public CourseRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    if (in == null) {
+                        in = open(file);
+                        open.add(in);
+                    }
+                    Row row = read(in, strings);
+                    if (row == null) {
+                        throw new EOFException("Spilled records end after " + index + " of " + size);
+                    }
+                    if (++index == size) {
+                        open.remove(in);
+                        in.close();
+                    }
+                    return row.record;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read spilled records", e);
+                }
+            }
+
+            @Override
+            public int nextIndex() {
+                return index;
+            }
+
+            @Override
+            public boolean hasPrevious() {
+                return false;
+            }
+
+            @Override
+            public CourseRecord previous() {
+                throw new UnsupportedOperationException("Spilled records are read forward only");
+            }
+
+            @Override
+            public int previousIndex() {
+                return index - 1;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void set(CourseRecord record) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void add(CourseRecord record) {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.CourseDTO;
+import com.example.SaarniLearningAssignment.dto.ResultDTO;
+import com.example.SaarniLearningAssignment.dto.UserDTO;
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the course, user and result summaries in a single pass over deduplicated records.
+ *
+ * Instead of grouping full record lists per course and per user, it keeps small accumulators:
+ * - Status counters (completed, failed, inprogress and any other status seen)
+ * - Grade histogram for completed courses
+ * - Earliest and latest completion dates per course
+ * - Grade sum and count per user for the average
+ *
+ * The produced DTOs are identical to grouping the records and summarizing each group separately.
+ */
+public class SummaryAggregator {
+
+    private final Map<String, CourseAccumulator> courses = new HashMap<>();
+    private final Map<String, UserAccumulator> users = new HashMap<>();
+    private final List<ResultDTO> results = new ArrayList<>();
+    private final boolean collectResults;
+
+    public SummaryAggregator() {
+        this(true);
+    }
+
+    /**
+     * @param collectResults whether the flat result list should be built; callers that only need
+     *                       course or user summaries can skip it
+     */
+    public SummaryAggregator(boolean collectResults) {
+        this.collectResults = collectResults;
+    }
+
+    /**
+     * Adds a single deduplicated record to all three summaries.
+     */
+    public void accept(CourseRecord record) {
+        accept(record.getCourseName(), record.getStartDate(), record.getEndDate(),
+                record.getEmail(), record.getFirstName(), record.getLastName(),
+                record.getStatus(), record.getGrade(), record.getCompletionDate());
+    }
+
+    /**
+     * Adds a single deduplicated attempt given as individual fields, for callers that do not hold
+     * {@link CourseRecord} objects (such as {@link CourseRecordBatch}).
+     */
+    public void accept(String courseName, LocalDate startDate, LocalDate endDate,
+                       String email, String firstName, String lastName,
+                       String status, Integer grade, LocalDate completionDate) {
+        courses.computeIfAbsent(courseName, name -> new CourseAccumulator(startDate, endDate))
+                .add(status, grade, completionDate);
+        users.computeIfAbsent(email, key -> new UserAccumulator(firstName, lastName))
+                .add(status, grade);
+
+        if (collectResults && isResult(status)) {
+            results.add(new ResultDTO(courseName, email, status, grade, completionDate));
+        }
+    }
+
+    /**
+     * Whether an attempt with this status belongs in the flat result list (completed or failed).
+     */
+    public static boolean isResult(String status) {
+        return "completed".equals(status) || "failed".equals(status);
+    }
+
+    /**
+     * The result entry for a record whose status passes {@link #isResult(String)}.
+     */
+    public static ResultDTO toResult(CourseRecord record) {
+        return new ResultDTO(record.getCourseName(), record.getEmail(), record.getStatus(),
+                record.getGrade(), record.getCompletionDate());
+    }
+
+    /**
+     * Lazy view of the result entries of the given records, in record order. Each iteration walks
+     * the records again, so the result list is never held in memory. A {@link CourseRecordBatch}
+     * is read column by column without materializing records.
+     */
+    public static Iterable<ResultDTO> resultsOf(List<CourseRecord> records) {
+        if (records instanceof CourseRecordBatch batch) {
+            return () -> batch.results().iterator();
+        }
+        return () -> records.stream()
+                .filter(record -> isResult(record.getStatus()))
+                .map(SummaryAggregator::toResult)
+                .iterator();
+    }
+
+    /**
+     * Adds every record of the given collection. A {@link CourseRecordBatch} is read column by column
+     * without materializing records.
+     */
+    public SummaryAggregator acceptAll(Iterable<CourseRecord> records) {
+        if (records instanceof CourseRecordBatch batch) {
+            batch.summarizeInto(this);
+            return this;
+        }
+        for (CourseRecord record : records) {
+            accept(record);
+        }
+        return this;
+    }
+
+    public List<CourseDTO> courses() {
+        List<CourseDTO> result = new ArrayList<>(courses.size());
+        for (var entry : courses.entrySet()) {
+            result.add(entry.getValue().toDto(entry.getKey()));
+        }
+        return result;
+    }
+
+    public List<UserDTO> users() {
+        List<UserDTO> result = new ArrayList<>(users.size());
+        for (var entry : users.entrySet()) {
+            result.add(entry.getValue().toDto(entry.getKey()));
+        }
+        return result;
+    }
+
+    public List<ResultDTO> results() {
+        return results;
+    }
+
+    /**
+     * Counts attempts per status. The three known statuses are plain counters;
+     * anything else is kept in first-seen order so the output map matches the grouped version.
+     */
+    private static final class StatusCounter {
+        private int completed;
+        private int failed;
+        private int inprogress;
+        private Map<String, Integer> other;
+
+        void add(String status) {
+            switch (status) {
+                case "completed" -> completed++;
+                case "failed" -> failed++;
+                case "inprogress" -> inprogress++;
+                default -> {
+                    if (other == null) other = new LinkedHashMap<>();
+                    other.merge(status, 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<String, Integer> toMap() {
+            Map<String, Integer> results = new HashMap<>();
+            results.put("completed", completed);
+            results.put("failed", failed);
+            results.put("inprogress", inprogress);
+            if (other != null) other.forEach(results::put);
+            return results;
+        }
+    }
+
+    /**
+     * Grade histogram kept as parallel arrays in first-seen order; grades are a handful of distinct values.
+     */
+    private static final class GradeHistogram {
+        private int[] grades = new int[6];
+        private int[] counts = new int[6];
+        private int size;
+
+        void add(int grade) {
+            for (int i = 0; i < size; i++) {
+                if (grades[i] == grade) {
+                    counts[i]++;
+                    return;
+                }
+            }
+            if (size == grades.length) {
+                grades = Arrays.copyOf(grades, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            grades[size] = grade;
+            counts[size] = 1;
+            size++;
+        }
+
+        Map<Integer, Integer> toMap() {
+            Map<Integer, Integer> map = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(grades[i], counts[i]);
+            }
+            return map;
+        }
+    }
+
+    private static final class CourseAccumulator {
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final StatusCounter statuses = new StatusCounter();
+        private final GradeHistogram grades = new GradeHistogram();
+        private LocalDate first;
+        private LocalDate last;
+
+        CourseAccumulator(LocalDate startDate, LocalDate endDate) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        void add(String status, Integer grade, LocalDate completionDate) {
+            statuses.add(status);
+            if ("completed".equals(status) && grade != null) {
+                grades.add(grade);
+                if (first == null || completionDate.isBefore(first)) first = completionDate;
+                if (last == null || completionDate.isAfter(last)) last = completionDate;
+            }
+        }
+
+        CourseDTO toDto(String courseName) {
+            return new CourseDTO(courseName, startDate, endDate, statuses.toMap(), grades.toMap(), first, last);
+        }
+    }
+
+    private static final class UserAccumulator {
+        private final String firstName;
+        private final String lastName;
+        private final StatusCounter statuses = new StatusCounter();
+        private long gradeSum;
+        private int gradeCount;
+
+        UserAccumulator(String firstName, String lastName) {
+            this.firstName = firstName;
+            this.lastName = lastName;
+        }
+
+        void add(String status, Integer grade) {
+            statuses.add(status);
+            if ("completed".equals(status) && grade != null) {
+                gradeSum += grade;
+                gradeCount++;
+            }
+        }
+
+        UserDTO toDto(String email) {
+            Double gradeAvg = gradeCount == 0 ? null : (double) gradeSum / gradeCount;
+            return new UserDTO(firstName, lastName, email, statuses.toMap(), gradeAvg);
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.example.SaarniLearningAssignment.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores uploaded CSV files in the input folder without the watcher ever seeing a partial file.
+ *
+ * - Bodies are streamed into a hidden {@code .upload-*.part} file in the input folder, which the
+ *   watcher ignores, and renamed to the CSV name in one atomic move when complete
+ * - Uploads larger than {@code app.upload.max-size} are rejected before reading when the size is
+ *   known up front, and otherwise as soon as the limit is passed
+ * - Resumable uploads declare their length, are appended to in any number of requests at the
+ *   current offset, and are completed by the request that reaches the length; bytes received before
+ *   a dropped connection are kept, so the client continues from the reported offset
+ * - Sessions that have not received data for longer than {@code app.upload.session-timeout} are deleted,
+ *   checked every {@code app.upload.session-sweep} milliseconds, as are part files left by an earlier run;
+ *   a session that is being appended to is never expired
+ * - Each session is guarded by a {@link ReentrantLock} rather than a monitor, so a request blocked on a slow
+ *   body does not pin the carrier of a virtual thread
+ * - Every upload reserves a place in the {@link IngestionQueue} before any of its body is read (a resumable
+ *   one when it starts), and is refused with {@link IngestionQueue.FullException} if the queue is full;
+ *   a completed file is queued in place of its reservation
+ * - An upload is refused with {@link IngestionQueue.InFlightException} instead of being published while a
+ *   file of the same name is being processed; a complete resumable upload then stays open, so its last
+ *   request can be repeated later
+ *
+ * Every upload registers its job in the {@link JobRegistry} before the body is read; the job only takes the
+ * place of an earlier upload of the same name once the file is published.
+ */
+@Service
+public class UploadStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadStore.class);
+
+    private static final String PART_PREFIX = ".upload-";
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${app.input.folder}")
+    private String inputFolder;
+    @Value("${app.upload.max-size}")
+    private long maxSize;
+    @Value("${app.upload.session-timeout}")
+    private long sessionTimeoutMillis;
+
+    private final JobRegistry jobRegistry;
+    private final ResultCache resultCache;
+    private final IngestionQueue ingestionQueue;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public UploadStore(JobRegistry jobRegistry, ResultCache resultCache, IngestionQueue ingestionQueue) {
+        this.jobRegistry = jobRegistry;
+        this.resultCache = resultCache;
+        this.ingestionQueue = ingestionQueue;
+    }
+
+    /**
+     * The upload is larger than {@code app.upload.max-size}, or than the length it declared.
+     */
+    public static class TooLargeException extends IOException {
+        public TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A resumable upload was continued at another offset than the number of bytes received so far.
+     */
+    public static class OffsetMismatchException extends IOException {
+        private final long offset;
+
+        public OffsetMismatchException(long offset) {
+            super("Upload continues at offset " + offset);
+            this.offset = offset;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * A resumable upload in progress.
+     */
+    public static final class UploadSession {
+        private final String id;
+        private final String fileName;
+        private final long length;
+        private final Path part;
+        private volatile long offset;
+        private volatile long lastActivity = System.currentTimeMillis();
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean closed;
+
+        private UploadSession(String id, String fileName, long length, Path part) {
+            this.id = id;
+            this.fileName = fileName;
+            this.length = length;
+            this.part = part;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * Result of appending to a resumable upload.
+     *
+     * @param offset bytes received so far
+     * @param job    the queued job once the upload is complete, otherwise null
+     */
+    public record Progress(long offset, ProcessingJob job) {
+    }
+
+    /**
+     * Deletes part files of uploads that were in progress when the application stopped.
+     */
+    @PostConstruct
+    public void removeAbandonedParts() throws IOException {
+        Path folder = Paths.get(inputFolder);
+        Files.createDirectories(folder);
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(folder, PART_PREFIX + "*" + PART_SUFFIX)) {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+                logger.info("Deleted unfinished upload {}", part.getFileName());
+            }
+        }
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Streams a complete upload into the input folder.
+     *
+     * @param fileName       name of the CSV in the input folder (only the last path segment is used)
+     * @param body           upload content
+     * @param declaredLength length announced by the client, or -1 if unknown
+     * @return the queued job for the file
+     */
+    public ProcessingJob store(String fileName, InputStream body, long declaredLength) throws IOException {
+        checkSize(declaredLength);
+        String name = plainName(fileName);
+        Path target = targetOf(name);
+        ingestionQueue.checkNotProcessing(target);
+        ingestionQueue.reserve();
+        // Register the job first, so its id is known while the body is read
+        ProcessingJob job = jobRegistry.register(name);
+        Path part = newPart(UUID.randomUUID().toString());
+        long size;
+        try {
+            InputStream in = resultCache.digesting(body);
+            try (in; FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                size = copy(in, out, 0, maxSize, null);
+            }
+            ingestionQueue.publishReserved(target, () -> {
+                publish(part, target);
+                jobRegistry.queued(job);
+                resultCache.rememberUpload(target, in);
+            });
+        } catch (IOException | RuntimeException e) {
+            ingestionQueue.release();
+            Files.deleteIfExists(part);
+            jobRegistry.abandon(job, refusal(e));
+            throw e;
+        }
+        logger.info("Uploaded CSV saved to: {} ({} bytes, job {})", name, size, job.getId());
+        return job;
+    }
+
+    /**
+     * Starts a resumable upload of the given length.
+     */
+    public UploadSession start(String fileName, long length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("Upload length must not be negative");
+        }
+        checkSize(length);
+        String id = UUID.randomUUID().toString();
+        UploadSession session = new UploadSession(id, plainName(fileName), length, newPart(id));
+        ingestionQueue.reserve();
+        try {
+            Files.createFile(session.part);
+        } catch (IOException e) {
+            ingestionQueue.release();
+            throw e;
+        }
+        sessions.put(id, session);
+        logger.info("Started upload {} of {} ({} bytes)", id, session.fileName, length);
+        return session;
+    }
+
+    public Optional<UploadSession> find(String id) {
+        return Optional.ofNullable(sessions.get(id));
+    }
+
+    /**
+     * Appends the body to a resumable upload at the given offset, and publishes the file once all
+     * declared bytes have arrived. Bytes received before a failure are kept.
+     */
+    public Progress append(UploadSession session, long offset, InputStream body) throws IOException {
+        session.lock.lock();
+        try {
+            if (session.closed) {
+                throw new NoSuchFileException("Upload " + session.id + " is no longer open");
+            }
+            if (offset != session.offset) {
+                throw new OffsetMismatchException(session.offset);
+            }
+            session.lastActivity = System.currentTimeMillis();
+            try (FileChannel out = FileChannel.open(session.part, StandardOpenOption.WRITE)) {
+                copy(body, out, offset, session.length, session);
+            }
+            if (session.offset < session.length) {
+                return new Progress(session.offset, null);
+            }
+            ProcessingJob job = jobRegistry.register(session.fileName);
+            Path target = targetOf(session.fileName);
+            try {
+                ingestionQueue.publishReserved(target, () -> {
+                    publish(session.part, target);
+                    jobRegistry.queued(job);
+                });
+            } catch (IOException e) {
+                // The session stays open with all its bytes, so the client can repeat the last request
+                jobRegistry.abandon(job, refusal(e));
+                throw e;
+            }
+            close(session);
+            logger.info("Uploaded CSV saved to: {} ({} bytes, upload {}, job {})",
+                    session.fileName, session.length, session.id, job.getId());
+            return new Progress(session.offset, job);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels a resumable upload and deletes what was received, once a request appending to it is done.
+     */
+    public void cancel(UploadSession session) throws IOException {
+        session.lock.lock();
+        try {
+            discard(session);
+        } finally {
+            session.lock.unlock();
+        }
+        logger.info("Cancelled upload {} of {}", session.id, session.fileName);
+    }
+
+    /**
+     * Deletes resumable uploads that have not received data within the session timeout. Sessions that
+     * are being appended to are skipped, so the sweep never waits for a request.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.session-sweep}")
+    public void expireSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTimeoutMillis;
+        for (UploadSession session : sessions.values()) {
+            if (session.lastActivity >= cutoff || !session.lock.tryLock()) {
+                continue;
+            }
+            try {
+                // Data may have arrived before the lock was taken
+                if (session.lastActivity < cutoff) {
+                    discard(session);
+                    logger.info("Expired upload {} of {}", session.id, session.fileName);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to delete expired upload {}: {}", session.id, e.getMessage());
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes the session and deletes its part file; called with the session's lock held.
+     */
+    private void discard(UploadSession session) throws IOException {
+        if (!session.closed) {
+            close(session);
+            ingestionQueue.release();
+        }
+        Files.deleteIfExists(session.part);
+    }
+
+    private void close(UploadSession session) {
+        session.closed = true;
+        sessions.remove(session.id, session);
+    }
+
+    private void checkSize(long length) throws TooLargeException {
+        if (length > maxSize) {
+            throw new TooLargeException("Upload of " + length + " bytes exceeds the limit of " + maxSize + " bytes");
+        }
+    }
+
+    /**
+     * Copies the stream into the channel from the given position until the stream ends.
+     *
+     * @param limit   position the copy must not go beyond
+     * @param session resumable upload whose offset and last activity follow the bytes written, or null
+     * @return the position after the last byte written
+     */
+    private long copy(InputStream in, FileChannel out, long position, long limit, UploadSession session) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            if (position + read > limit) {
+                throw new TooLargeException(session == null
+                        ? "Upload exceeds the limit of " + limit + " bytes"
+                        : "Upload exceeds its declared length of " + limit + " bytes");
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+            while (bytes.hasRemaining()) {
+                position += out.write(bytes, position);
+            }
+            if (session != null) {
+                session.offset = position;
+                session.lastActivity = System.currentTimeMillis();
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Moves a complete part file to its CSV name in one step, replacing an earlier upload of the same name
+     * that is still waiting.
+     */
+    private static void publish(Path part, Path target) throws IOException {
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path targetOf(String name) {
+        return Paths.get(inputFolder).resolve(name);
+    }
+
+    /**
+     * Reason recorded on the job of an upload that could not be stored.
+     */
+    private static String refusal(Exception e) {
+        return e instanceof TooLargeException || e instanceof IngestionQueue.InFlightException
+                ? e.getMessage() : "Failed to save the uploaded file";
+    }
+
+    private Path newPart(String id) {
+        return Paths.get(inputFolder).resolve(PART_PREFIX + id + PART_SUFFIX);
+    }
+
+    /**
+     * Reduces a client-supplied name to a plain file name, so it cannot point outside the input folder.
+     */
+    private static String plainName(String fileName) {
+        Path name;
+        try {
+            name = Paths.get(fileName).getFileName();
+        } catch (InvalidPathException e) {
+            name = null;
+        }
+        if (name == null || name.toString().isBlank()) {
+            throw new IllegalArgumentException("Invalid file name: " + fileName);
+        }
+        return name.toString();
+    }
+}
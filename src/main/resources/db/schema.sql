@@ -0,0 +1,52 @@
+-- Tables written by DatabaseSink (app.db.enabled=true); portable between PostgreSQL and H2
+
+-- One row per processed CSV file
+CREATE TABLE IF NOT EXISTS import_run (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_name VARCHAR(1000) NOT NULL,
+    processed_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    records INTEGER NOT NULL
+);
+
+-- Latest attempt per user and course over all files; run_id is the file that last changed the row
+CREATE TABLE IF NOT EXISTS course_record (
+    email VARCHAR(320) NOT NULL,
+    course_name VARCHAR(1000) NOT NULL,
+    first_name VARCHAR(1000),
+    last_name VARCHAR(1000),
+    start_date DATE,
+    end_date DATE,
+    status VARCHAR(100) NOT NULL,
+    grade INTEGER,
+    completion_date DATE,
+    run_id BIGINT NOT NULL,
+    PRIMARY KEY (email, course_name)
+);
+
+-- courses.json of each file; grades is a JSON object of grade -> count
+CREATE TABLE IF NOT EXISTS course_summary (
+    run_id BIGINT NOT NULL,
+    course_name VARCHAR(1000) NOT NULL,
+    start_date DATE,
+    end_date DATE,
+    completed INTEGER NOT NULL,
+    failed INTEGER NOT NULL,
+    inprogress INTEGER NOT NULL,
+    grades VARCHAR(1000) NOT NULL,
+    first_completion_date DATE,
+    most_recent_completion_date DATE,
+    PRIMARY KEY (run_id, course_name)
+);
+
+-- users.json of each file
+CREATE TABLE IF NOT EXISTS user_summary (
+    run_id BIGINT NOT NULL,
+    email VARCHAR(320) NOT NULL,
+    first_name VARCHAR(1000),
+    last_name VARCHAR(1000),
+    completed INTEGER NOT NULL,
+    failed INTEGER NOT NULL,
+    inprogress INTEGER NOT NULL,
+    grade_average DOUBLE PRECISION,
+    PRIMARY KEY (run_id, email)
+);
@@ -0,0 +1,118 @@
+package com.example.SaarniLearningAssignment.controller;
+
+import com.example.SaarniLearningAssignment.service.CsvProcessingService;
+import com.example.SaarniLearningAssignment.service.JsonWriterService;
+import com.example.SaarniLearningAssignment.service.OutputCompression;
+import com.example.SaarniLearningAssignment.service.OutputFormat;
+import com.example.SaarniLearningAssignment.service.OutputSerializer;
+import com.example.SaarniLearningAssignment.service.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ProcessControllerTests {
+
+    private static final String HEADER = "Etunimi,Sukunimi,E-mail,Kurssin nimi,Kurssi alkaa,Kurssi päättyy,Status,Arvosana,Kurssin suorituspäivämäärä\n";
+    private static final String CSV = HEADER
+            + "Anna,Virtanen,anna@example.com,Building AI,2022-09-01,2022-11-30,completed,4,2022-10-11\n"
+            + "Anna,Virtanen,anna@example.com,Building AI,2022-09-01,2022-11-30,failed,,2022-10-01\n"
+            + "Ben,Smith,ben@example.com,Building AI,2022-09-01,2022-11-30,inprogress,,\n";
+
+    @TempDir
+    Path outputDir;
+
+    private ProcessController controller;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+        CsvProcessingService csvProcessingService = new CsvProcessingService(metrics);
+        ReflectionTestUtils.setField(csvProcessingService, "parallelEnabled", false);
+        OutputSerializer outputSerializer = new OutputSerializer(true, OutputFormat.JSON, OutputCompression.NONE);
+        JsonWriterService jsonWriterService = new JsonWriterService(csvProcessingService, outputSerializer, metrics);
+        ReflectionTestUtils.setField(jsonWriterService, "outputFolder", outputDir.toString());
+        controller = new ProcessController(csvProcessingService, jsonWriterService, outputSerializer);
+        ReflectionTestUtils.setField(controller, "maxConcurrent", 1);
+        controller.init();
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void returnsSummariesWithoutWritingOutputs() throws Exception {
+        MvcResult result = mockMvc.perform(post("/v1/records/process").contentType("text/csv").content(CSV))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.courses[0].name").value("Building AI"))
+                .andExpect(jsonPath("$.courses[0].results.completed").value(1))
+                .andExpect(jsonPath("$.users.length()").value(2))
+                .andExpect(jsonPath("$.results.length()").value(1))
+                .andExpect(jsonPath("$.results[0].course_name").value("Building AI"))
+                .andExpect(jsonPath("$.results[0].date").value("2022-10-11"));
+
+        assertEquals(List.of(), listOutputs());
+    }
+
+    @Test
+    void persistWritesOutputFolder() throws Exception {
+        MvcResult result = mockMvc.perform(post("/v1/records/process").contentType("text/csv").content(CSV)
+                        .param("persist", "true").param("name", "../school.csv"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        List<Path> outputs = listOutputs();
+        assertEquals(1, outputs.size());
+        assertTrue(outputs.get(0).getFileName().toString().startsWith("school_"));
+        assertTrue(Files.exists(outputs.get(0).resolve("course_results.json")));
+    }
+
+    @Test
+    void headerOnlyBodyIsRejected() throws Exception {
+        MvcResult result = mockMvc.perform(post("/v1/records/process").contentType("text/csv").content(HEADER))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void requestsBeyondTheLimitAreRefusedUntilOneIsDone() throws Exception {
+        Semaphore permits = (Semaphore) ReflectionTestUtils.getField(controller, "permits");
+        permits.acquire();
+        MvcResult refused = mockMvc.perform(post("/v1/records/process").contentType("text/csv").content(CSV))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(refused)).andExpect(status().isTooManyRequests());
+        permits.release();
+
+        // Both a failed and a completed request give their permit back
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/v1/records/process").contentType("text/csv").content(HEADER))
+                .andReturn())).andExpect(status().isBadRequest());
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/v1/records/process").contentType("text/csv").content(CSV))
+                .andReturn())).andExpect(status().isOk());
+        assertEquals(1, permits.availablePermits());
+    }
+
+    private List<Path> listOutputs() throws IOException {
+        try (Stream<Path> paths = Files.list(outputDir)) {
+            return paths.toList();
+        }
+    }
+}
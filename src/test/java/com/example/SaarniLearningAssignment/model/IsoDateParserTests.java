@@ -0,0 +1,41 @@
+package com.example.SaarniLearningAssignment.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsoDateParserTests {
+
+    private static final String[] INPUTS = {
+            "2022-09-03", "2022-11-30", "2024-02-29", "2023-02-29", "2022-02-30", "2022-04-31",
+            "2022-13-01", "2022-00-10", "2022-01-00", "0000-01-01", "9999-12-31",
+            "2022-9-3", "2022-09-3", "22-09-03", "2022/09/03", "2022-09-03 ", " 2022-09-03",
+            "2022-09-03Z", "2022-09-03+02:00", "+12022-09-03", "２０２２-09-03", "2022-0a-03", ""
+    };
+
+    @Test
+    void acceptsAndRejectsExactlyWhatTheIsoFormatterDoes() {
+        IsoDateParser parser = new IsoDateParser();
+        for (int round = 0; round < 2; round++) { // second round is served from the cache
+            for (String input : INPUTS) {
+                LocalDate expected = parseWithFormatter(input);
+                if (expected == null) {
+                    assertThrows(Exception.class, () -> parser.parse(input), input);
+                } else {
+                    assertEquals(expected, parser.parse(input), input);
+                }
+            }
+        }
+    }
+
+    private static LocalDate parseWithFormatter(String input) {
+        try {
+            return LocalDate.parse(input, DateTimeFormatter.ISO_DATE);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.SaarniLearningAssignment.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCourseKeyTests {
+
+    @Test
+    void hashMatchesConcatenatedStringKey() {
+        String[][] pairs = {
+                {"lisa.fowler@example.com", "Johdatus yhteiskuntatilastotieteeseen"},
+                {"a@example.com", ""},
+                {"", "Building AI"},
+                {"ääni@example.com", "Kurssi päättyy, \"lainattu\""}
+        };
+        for (String[] pair : pairs) {
+            assertEquals((pair[0] + "|" + pair[1]).hashCode(), new UserCourseKey(pair[0], pair[1]).hashCode());
+        }
+    }
+
+    @Test
+    void keysAreComparedFieldByField() {
+        assertEquals(new UserCourseKey("a@example.com", "AI"), new UserCourseKey("a@example.com", "AI"));
+        assertNotEquals(new UserCourseKey("a|b", "c"), new UserCourseKey("a", "b|c"));
+    }
+}
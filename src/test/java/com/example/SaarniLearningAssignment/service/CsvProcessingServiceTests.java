@@ -0,0 +1,226 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.ResultDTO;
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvProcessingServiceTests {
+
+    private static final String HEADER = "Etunimi,Sukunimi,E-mail,Kurssin nimi,Kurssi alkaa,Kurssi päättyy,Status,Arvosana,Kurssin suorituspäivämäärä\n";
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry registry;
+    private CsvProcessingService service;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        service = new CsvProcessingService(new PipelineMetrics(registry));
+        ReflectionTestUtils.setField(service, "parallelEnabled", true);
+        ReflectionTestUtils.setField(service, "parallelMinFileSize", 0L);
+        ReflectionTestUtils.setField(service, "parallelChunkSize", 256L);
+        ReflectionTestUtils.setField(service, "parallelThreads", 4);
+    }
+
+    @Test
+    void parallelParseMatchesSequentialParse() throws IOException {
+        String csv = generateCsv(2000, new Random(42));
+        Path file = tempDir.resolve("generated.csv");
+        Files.writeString(file, csv);
+
+        List<CourseRecord> sequential = service.parseAndFilter(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        List<CourseRecord> parallel = service.parseAndFilter(file);
+
+        assertEquals(describe(sequential), describe(parallel));
+    }
+
+    @Test
+    void columnarBatchMatchesRowDeduplication() throws IOException {
+        String csv = generateCsv(2000, new Random(7));
+        Path file = tempDir.resolve("columnar.csv");
+        Files.writeString(file, csv);
+
+        List<CourseRecord> rows = service.parseAndFilter(file);
+        ReflectionTestUtils.setField(service, "columnar", true);
+        // Chunk batches merged column to column, and one batch parsed sequentially
+        List<CourseRecord> columnar = service.parseAndFilter(file);
+        List<CourseRecord> sequential = service.parseAndFilter(file, true, stats -> { });
+
+        assertInstanceOf(CourseRecordBatch.class, columnar);
+        assertEquals(describe(rows), describe(columnar));
+        assertEquals(describe(rows), describe(sequential));
+        assertEquals(describeResults(rows), describeResults(columnar));
+    }
+
+    @Test
+    void spilledDeduplicationMatchesInMemoryAndCleansUp() throws IOException {
+        String csv = generateCsv(2000, new Random(11));
+        Path file = tempDir.resolve("spilled.csv");
+        Files.writeString(file, csv);
+        Path spillFolder = tempDir.resolve("spill");
+        ReflectionTestUtils.setField(service, "spillFolder", spillFolder.toString());
+        ReflectionTestUtils.setField(service, "spillPartitions", 4);
+        // Room for 50 keys, far fewer than the file has
+        ReflectionTestUtils.setField(service, "spillThreshold", 50 * SpillingDeduplicator.BYTES_PER_KEY);
+
+        List<CourseRecord> inMemory = service.parseAndFilter(file, true, stats -> { });
+        double replaced = registry.get("csv.records.replaced").counter().count();
+        ReflectionTestUtils.setField(service, "spillEnabled", true);
+        List<CourseRecord> spilled = service.parseAndFilter(file, true, stats -> { });
+
+        assertInstanceOf(SpillingDeduplicator.SpilledRecords.class, spilled);
+        assertEquals(describe(inMemory), describe(spilled));
+        assertEquals(2 * replaced, registry.get("csv.records.replaced").counter().count());
+        ((SpillingDeduplicator.SpilledRecords) spilled).close();
+        try (Stream<Path> left = Files.list(spillFolder)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void sequentialParseSpillsPastTheThresholdOutsideTheLowMemoryMode() throws IOException {
+        String csv = generateCsv(2000, new Random(13));
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        ReflectionTestUtils.setField(service, "spillFolder", tempDir.resolve("spill").toString());
+        ReflectionTestUtils.setField(service, "spillPartitions", 4);
+        ReflectionTestUtils.setField(service, "spillThreshold", 50 * SpillingDeduplicator.BYTES_PER_KEY);
+
+        List<CourseRecord> inMemory = service.parseAndFilter(new ByteArrayInputStream(bytes));
+        ReflectionTestUtils.setField(service, "spillEnabled", true);
+        List<CourseRecord> spilled = service.parseAndFilter(new ByteArrayInputStream(bytes));
+
+        assertInstanceOf(SpillingDeduplicator.SpilledRecords.class, spilled);
+        assertEquals(describe(inMemory), describe(spilled));
+        ((SpillingDeduplicator.SpilledRecords) spilled).close();
+
+        // Below the threshold the winners stay in memory
+        ReflectionTestUtils.setField(service, "spillThreshold", 10_000 * SpillingDeduplicator.BYTES_PER_KEY);
+        List<CourseRecord> kept = service.parseAndFilter(new ByteArrayInputStream(bytes));
+        assertInstanceOf(CourseRecordBatch.class, kept);
+        assertEquals(describe(inMemory), describe(kept));
+    }
+
+    @Test
+    void splitterDoesNotCutQuotedNewlines() throws IOException {
+        String csv = HEADER
+                + "Anna,\"Multi\nline\",anna@example.com,\"Course, \"\"quoted\"\"\",2022-09-01,2022-11-30,completed,3,2022-09-11\n"
+                + "Ben,Smith,ben@example.com,Course,2022-09-01,2022-11-30,inprogress,,\n";
+        Path file = tempDir.resolve("quoted.csv");
+        Files.writeString(file, csv);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            CsvChunkSplitter.Split split = CsvChunkSplitter.split(channel, 1);
+            byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+
+            assertEquals(HEADER.getBytes(StandardCharsets.UTF_8).length, split.headerEnd());
+            assertEquals(2, split.chunks().size());
+            assertEquals("Ben", new String(bytes, (int) split.chunks().get(1).start(), 3, StandardCharsets.UTF_8));
+            assertEquals(bytes.length, split.chunks().get(1).end());
+        }
+    }
+
+    @Test
+    void chunksKnowTheFileRowOfTheirFirstRecord() throws IOException {
+        String csv = HEADER
+                + "Anna,\"Multi\nline\",anna@example.com,Course,2022-09-01,2022-11-30,completed,3,2022-09-11\n"
+                + "\n"
+                + "Ben,Smith,ben@example.com,Course,2022-09-01,2022-11-30,inprogress,,\n"
+                + "Cid,Smith,cid@example.com,Course,2022-09-01,2022-11-30,inprogress,,\n";
+        Path file = tempDir.resolve("rows.csv");
+        Files.writeString(file, csv);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            List<CsvChunkSplitter.Chunk> chunks = CsvChunkSplitter.split(channel, 1).chunks();
+
+            // Like commons-csv, the empty line is not a record
+            assertEquals(List.of(0L, 1L, 1L, 2L), chunks.stream().map(CsvChunkSplitter.Chunk::rowOffset).toList());
+        }
+    }
+
+    @Test
+    void rowsAreCountedByOutcomeInBothModes() throws IOException {
+        String csv = HEADER
+                + "Anna,Virtanen,anna@example.com,Math,2022-09-01,2022-11-30,completed,3,2022-10-01\n"
+                + "Anna,Virtanen,anna@example.com,Math,2022-09-01,2022-11-30,completed,4,2022-10-05\n"
+                + "Anna,Virtanen,anna@example.com,Math,2022-09-01,2022-11-30,failed,,2022-10-02\n"
+                + "Ben,Smith,ben@example.com,Math,2022-09-01,2022-11-30,completed,4,\n"
+                + "Ben,Smith,ben@example.com,Math,2022-09-01,2022-11-30,completed,4,2022-12-30\n"
+                + "Carl,Berg,carl@example.com,Math,2022-09-01,2022-11-30,completed,4,someday\n"
+                + "Carl,Berg,carl@example.com,Math,2022-09-01,2022-11-30,inprogress,,\n";
+        Path file = tempDir.resolve("counted.csv");
+        Files.writeString(file, csv);
+
+        service.parseAndFilter(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        service.parseAndFilter(file);
+
+        // Every count twice: once sequentially, once split into chunks
+        assertEquals(8, registry.get("csv.rows.accepted").counter().count());
+        assertEquals(2, registry.get("csv.records.replaced").counter().count());
+        for (String reason : List.of("parse_error", "missing_fields", "date_out_of_range")) {
+            assertEquals(2, registry.get("csv.rows.rejected").tag("reason", reason).counter().count(), reason);
+        }
+        assertEquals(2, registry.get("csv.parse.stage").tag("stage", "dedup").timer().count());
+    }
+
+    @Test
+    void headerOnlyFileIsRejectedInParallelMode() throws IOException {
+        Path file = tempDir.resolve("empty.csv");
+        Files.writeString(file, HEADER);
+
+        assertThrows(RuntimeException.class, () -> service.parseAndFilter(file));
+    }
+
+    private static String generateCsv(int rows, Random random) {
+        String[] courses = {"Building AI", "Course, \"quoted\"", "Multi\nline course", "Ohjelmoinnin perusteet"};
+        String[] statuses = {"completed", "failed", "inprogress", "Completed"};
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (int i = 0; i < rows; i++) {
+            String course = courses[random.nextInt(courses.length)];
+            String status = statuses[random.nextInt(statuses.length)];
+            String date = status.equals("inprogress") ? "" : "2022-10-" + String.format("%02d", 1 + random.nextInt(28));
+            String grade = random.nextBoolean() ? String.valueOf(1 + random.nextInt(5)) : "";
+            sb.append("First").append(i % 13).append(",Last,")
+                    .append("user").append(random.nextInt(rows / 5)).append("@example.com,")
+                    .append('"').append(course.replace("\"", "\"\"")).append('"')
+                    .append(",2022-09-01,2022-11-30,").append(status).append(',').append(grade).append(',').append(date)
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static List<String> describe(List<CourseRecord> records) {
+        return records.stream()
+                .map(r -> String.join("|", r.getFirstName(), r.getLastName(), r.getEmail(), r.getCourseName(),
+                        String.valueOf(r.getStartDate()), String.valueOf(r.getEndDate()), r.getStatus(),
+                        String.valueOf(r.getGrade()), String.valueOf(r.getCompletionDate())))
+                .toList();
+    }
+
+    private static List<String> describeResults(List<CourseRecord> records) {
+        List<String> described = new ArrayList<>();
+        for (ResultDTO result : SummaryAggregator.resultsOf(records)) {
+            described.add(String.join("|", result.getCourseName(), result.getEmail(), result.getStatus(),
+                    String.valueOf(result.getGrade()), String.valueOf(result.getDate())));
+        }
+        return described;
+    }
+}
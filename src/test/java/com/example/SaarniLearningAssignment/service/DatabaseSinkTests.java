@@ -0,0 +1,93 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseSinkTests {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final LocalDate END = LocalDate.of(2024, 12, 31);
+
+    private final String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    private DatabaseSink sink;
+
+    @BeforeEach
+    void setUp() {
+        CsvProcessingService csvProcessingService = new CsvProcessingService(new PipelineMetrics(new SimpleMeterRegistry()));
+        sink = new DatabaseSink(csvProcessingService);
+        ReflectionTestUtils.setField(sink, "enabled", true);
+        ReflectionTestUtils.setField(sink, "url", url);
+        ReflectionTestUtils.setField(sink, "username", "sa");
+        ReflectionTestUtils.setField(sink, "password", "");
+        ReflectionTestUtils.setField(sink, "batchSize", 2);
+        sink.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink.stop();
+    }
+
+    @Test
+    void recordsAreUpsertedOnlyWhenTheySupersedeTheStoredAttempt() throws SQLException {
+        long first = sink.store(List.of(
+                record("anna@example.com", "Math", "completed", 3, "2024-05-01"),
+                record("ben@example.com", "Math", "failed", null, "2024-03-02"),
+                record("ben@example.com", "Art", "inprogress", null, null)), "first.csv");
+        long second = sink.store(List.of(
+                record("anna@example.com", "Math", "completed", 5, "2024-04-01"),
+                record("ben@example.com", "Math", "completed", 4, "2024-03-02"),
+                record("carl@example.com", "Art", "completed", 2, "2024-02-01")), "second.csv");
+
+        assertEquals(List.of(
+                "anna@example.com|Math|completed|3|" + first,
+                "ben@example.com|Art|inprogress|null|" + first,
+                "ben@example.com|Math|completed|4|" + second,
+                "carl@example.com|Art|completed|2|" + second),
+                query("SELECT email, course_name, status, grade, run_id FROM course_record ORDER BY email, course_name"));
+        assertEquals(List.of("Art|0|0|1|{}", "Math|1|1|0|{\"3\":1}"),
+                query("SELECT course_name, completed, failed, inprogress, grades FROM course_summary "
+                        + "WHERE run_id = " + first + " ORDER BY course_name"));
+        assertEquals(List.of("anna@example.com|5.0", "ben@example.com|4.0", "carl@example.com|2.0"),
+                query("SELECT email, grade_average FROM user_summary WHERE run_id = " + second + " ORDER BY email"));
+        assertEquals(List.of("first.csv|3", "second.csv|3"), query("SELECT file_name, records FROM import_run ORDER BY id"));
+    }
+
+    private List<String> query(String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            int columns = result.getMetaData().getColumnCount();
+            while (result.next()) {
+                List<String> values = new ArrayList<>();
+                for (int i = 1; i <= columns; i++) {
+                    values.add(String.valueOf(result.getObject(i)));
+                }
+                rows.add(String.join("|", values));
+            }
+        }
+        return rows;
+    }
+
+    private static CourseRecord record(String email, String course, String status, Integer grade, String completed) {
+        return new CourseRecord("First", "Last", email, course, START, END, status, grade,
+                completed == null ? null : LocalDate.parse(completed));
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.SaarniLearningAssignment.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRangeReaderTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void decodesMultiByteCharactersAcrossBufferRefillsAndSkipsBom() throws IOException {
+        // Well over one buffer, with two-, three- and four-byte sequences at every offset
+        String text = "Kurssi päättyy, € 😀\n".repeat(100_000);
+        Path file = dir.resolve("bom.csv");
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        byte[] withBom = new byte[bytes.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(bytes, 0, withBom, 3, bytes.length);
+        Files.write(file, withBom);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertEquals(text, readAll(new FileRangeReader(channel, 0, withBom.length), 8192));
+            // One char at a time splits the surrogate pairs of the emoji
+            assertEquals("Kurssi päättyy, € 😀\n", readAll(new FileRangeReader(channel, 0, 3 + bytes.length / 100_000), 1));
+        }
+    }
+
+    @Test
+    void malformedInputIsReportedWithItsOffset() throws IOException {
+        Path file = dir.resolve("latin1.csv");
+        Files.write(file, "Kurssi päättyy".getBytes(StandardCharsets.ISO_8859_1));
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            IOException e = assertThrows(IOException.class, () -> readAll(new FileRangeReader(channel, 0, channel.size()), 8192));
+            assertEquals("Input is not valid UTF-8 at byte 8", e.getMessage());
+        }
+    }
+
+    private static String readAll(Reader reader, int chunk) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[chunk];
+        int read;
+        while ((read = reader.read(buffer, 0, chunk)) >= 0) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+}
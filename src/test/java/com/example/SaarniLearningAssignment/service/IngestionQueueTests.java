@@ -0,0 +1,75 @@
+package com.example.SaarniLearningAssignment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionQueueTests {
+
+    @TempDir
+    Path input;
+
+    @Test
+    void uploadsAreRefusedWhileWaitingFilesAndReservationsFillTheQueue() throws Exception {
+        IngestionQueue queue = queue(2, IngestionQueue.Order.FIFO);
+        queue.reserve();
+        assertTrue(queue.offer(csv("dropped.csv", 10)));
+        assertFalse(queue.offer(input.resolve("dropped.csv")));
+
+        IngestionQueue.FullException full = assertThrows(IngestionQueue.FullException.class, queue::reserve);
+        assertTrue(full.getRetryAfterSeconds() >= 1);
+        assertEquals(2, queue.status().getDepth());
+
+        // The reserved upload completes: its place now holds the file
+        Path uploaded = csv("uploaded.csv", 10);
+        queue.publishReserved(uploaded, () -> { });
+        assertThrows(IngestionQueue.FullException.class, queue::reserve);
+
+        IngestionQueue.Entry first = queue.poll(0, TimeUnit.MILLISECONDS);
+        assertEquals("dropped.csv", first.path().getFileName().toString());
+        queue.reserve();
+        assertEquals(1, queue.status().getProcessing());
+
+        queue.done(first, TimeUnit.SECONDS.toNanos(4));
+        assertTrue(queue.offer(first.path()));
+    }
+
+    @Test
+    void smallestFirstOrderTakesSmallFilesBeforeEarlierLargeOnes() throws Exception {
+        IngestionQueue queue = queue(10, IngestionQueue.Order.SMALLEST_FIRST);
+        queue.offer(csv("large.csv", 3000));
+        queue.offer(csv("small.csv", 10));
+        queue.offer(csv("medium.csv", 200));
+        queue.offer(csv("tiny.csv", 10));
+
+        List<String> taken = new ArrayList<>();
+        IngestionQueue.Entry entry;
+        while ((entry = queue.poll(0, TimeUnit.MILLISECONDS)) != null) {
+            taken.add(entry.path().getFileName().toString());
+        }
+        assertEquals(List.of("small.csv", "tiny.csv", "medium.csv", "large.csv"), taken);
+    }
+
+    private Path csv(String name, int size) throws IOException {
+        return Files.write(input.resolve(name), new byte[size]);
+    }
+
+    private static IngestionQueue queue(int capacity, IngestionQueue.Order order) {
+        IngestionQueue queue = new IngestionQueue(new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(queue, "capacity", capacity);
+        ReflectionTestUtils.setField(queue, "order", order);
+        ReflectionTestUtils.setField(queue, "workers", 2);
+        queue.init();
+        return queue;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.dto.JobStatusDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobRegistryTests {
+
+    private JobRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new JobRegistry();
+        ReflectionTestUtils.setField(registry, "retentionMillis", 60_000L);
+    }
+
+    @Test
+    void workerClaimsRegisteredJobAndReportsLifecycle() {
+        ProcessingJob uploaded = registry.register("school.csv");
+        registry.queued(uploaded);
+        List<String> states = new ArrayList<>();
+        uploaded.subscribe(status -> states.add(status.getState()));
+
+        ProcessingJob claimed = registry.claim("school.csv");
+        claimed.parsing();
+        claimed.parsed(new CsvProcessingService.ParseStats(10, 8, 5));
+        claimed.writing();
+        claimed.done(Path.of("data/output/school_2025-01-01T00-00-00"));
+
+        assertSame(uploaded, claimed);
+        assertEquals(List.of("queued", "parsing", "parsing", "writing", "done"), states);
+        JobStatusDTO status = uploaded.completion().getNow(null);
+        assertNotNull(status);
+        assertEquals(8, status.getValidRows());
+        assertEquals(5, status.getRecords());
+        assertEquals(Path.of("data/output/school_2025-01-01T00-00-00").toString(), status.getOutputFolder());
+        assertSame(uploaded, registry.find(uploaded.getId()).orElseThrow());
+    }
+
+    @Test
+    void newerUploadWithSameNameFailsOlderJobOncePublished() {
+        ProcessingJob first = registry.register("school.csv");
+        registry.queued(first);
+
+        // A newer upload that fails before its file is published leaves the older job waiting
+        ProcessingJob failed = registry.register("school.csv");
+        registry.abandon(failed, "Upload exceeds the limit");
+        assertEquals(ProcessingJob.State.QUEUED, first.getState());
+
+        ProcessingJob second = registry.register("school.csv");
+        assertEquals(ProcessingJob.State.QUEUED, first.getState());
+        registry.queued(second);
+
+        assertEquals(ProcessingJob.State.ERROR, first.getState());
+        assertSame(second, registry.claim("school.csv"));
+    }
+
+    @Test
+    void manuallyDroppedFileGetsNewJob() {
+        ProcessingJob job = registry.claim("manual.csv");
+
+        assertEquals(ProcessingJob.State.QUEUED, job.getState());
+        assertEquals("manual.csv", job.getFileName());
+        assertTrue(registry.find(job.getId()).isPresent());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterServiceTests {
+
+    @TempDir
+    Path output;
+
+    private JsonWriterService writer;
+
+    @BeforeEach
+    void setUp() {
+        OutputSerializer serializer = new OutputSerializer(true, OutputFormat.JSON, OutputCompression.NONE);
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+        writer = new JsonWriterService(new CsvProcessingService(metrics), serializer, metrics);
+        ReflectionTestUtils.setField(writer, "outputFolder", output.toString());
+    }
+
+    @Test
+    void existingFolderOfTheSameNameIsNeverChanged() throws IOException {
+        // Folders another writer of school.csv published this second (and the next, in case the clock ticks)
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH-mm-ss");
+        LocalDateTime now = LocalDateTime.now();
+        for (LocalDateTime time : List.of(now, now.plusSeconds(1))) {
+            Path existing = Files.createDirectories(output.resolve("school_" + time.format(format)));
+            Files.writeString(existing.resolve("users.json"), "[\"earlier\"]");
+        }
+
+        Path published = writer.writeOutputs(output, "school.csv", List.of(), List.of(), List.of());
+
+        assertTrue(published.getFileName().toString().endsWith("-1"), published.toString());
+        assertEquals(List.of("course_results.json", "courses.json", "users.json"), names(published));
+        for (LocalDateTime time : List.of(now, now.plusSeconds(1))) {
+            assertEquals(List.of("users.json"), names(output.resolve("school_" + time.format(format))));
+        }
+        assertTrue(names(output).stream().noneMatch(name -> name.startsWith(".")));
+    }
+
+    @Test
+    void stagedOutputsAreOnlyVisibleOncePublished() throws IOException {
+        List<CourseRecord> records = List.of(new CourseRecord("Anna", "Virtanen", "anna@example.com", "Math",
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31), "completed", 4, LocalDate.of(2024, 5, 1)));
+
+        try (JsonWriterService.StagedOutputs discarded = writer.stageOutputs(records, "failed.csv")) {
+            assertTrue(names(output).stream().noneMatch(name -> name.startsWith("failed")));
+        }
+        assertEquals(List.of(), names(output));
+
+        Path published;
+        try (JsonWriterService.StagedOutputs staged = writer.stageOutputs(records, "school.csv")) {
+            published = staged.publish();
+        }
+        assertEquals(List.of(published.getFileName().toString()), names(output));
+        assertEquals(List.of("course_results.json", "courses.json", "users.json"), names(published));
+    }
+
+    private static List<String> names(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
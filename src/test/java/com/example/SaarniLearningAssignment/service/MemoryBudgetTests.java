@@ -0,0 +1,92 @@
+package com.example.SaarniLearningAssignment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTests {
+
+    private static final String HEADER = "Etunimi,Sukunimi,E-mail,Kurssin nimi,Kurssi alkaa,Kurssi päättyy,Status,Arvosana,Kurssin suorituspäivämäärä\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rowCountIsExactForSmallFilesAndExtrapolatedForLargeOnes() throws IOException {
+        MemoryBudget budget = budget(1L << 30);
+
+        Path small = Files.writeString(dir.resolve("small.csv"), HEADER + row(1) + row(2) + row(3).trim());
+        assertEquals(3, budget.estimate(small).rows());
+
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 50_000; i++) {
+            csv.append(row(i));
+        }
+        MemoryBudget.Estimate large = budget.estimate(Files.writeString(dir.resolve("large.csv"), csv));
+        // Extrapolated from the first 64 KB, whose rows are a little shorter than the average
+        assertEquals(50_000, large.rows(), 2_500);
+        assertEquals(MemoryBudget.FILE_OVERHEAD_BYTES + large.rows() * MemoryBudget.STANDARD_BYTES_PER_ROW, large.standardBytes());
+        assertTrue(large.lowMemoryBytes() < large.standardBytes());
+    }
+
+    @Test
+    void filesThatDoNotFitRunInLowMemoryModeOrWaitInOrder() throws Exception {
+        MemoryBudget budget = budget(1000);
+        MemoryBudget.Estimate medium = new MemoryBudget.Estimate(1, 600, 300);
+
+        MemoryBudget.Admission first = budget.admit(medium);
+        assertEquals(MemoryBudget.Mode.STANDARD, first.getMode());
+        MemoryBudget.Admission second = budget.admit(medium);
+        assertEquals(MemoryBudget.Mode.LOW_MEMORY, second.getMode());
+        assertEquals(900, budget.getReservedBytes());
+
+        // Larger than the whole budget: runs in low-memory mode once it has the budget to itself
+        CompletableFuture<MemoryBudget.Admission> huge =
+                CompletableFuture.supplyAsync(() -> admit(budget, new MemoryBudget.Estimate(1, 5000, 2000)));
+        assertThrows(TimeoutException.class, () -> huge.get(200, TimeUnit.MILLISECONDS));
+        first.close();
+        // A small file asking now waits behind the huge one
+        CompletableFuture<MemoryBudget.Admission> small =
+                CompletableFuture.supplyAsync(() -> admit(budget, new MemoryBudget.Estimate(1, 10, 5)));
+        assertThrows(TimeoutException.class, () -> small.get(200, TimeUnit.MILLISECONDS));
+        second.close();
+
+        MemoryBudget.Admission hugeAdmission = huge.get(5, TimeUnit.SECONDS);
+        assertEquals(MemoryBudget.Mode.LOW_MEMORY, hugeAdmission.getMode());
+        assertEquals(1000, budget.getReservedBytes());
+        hugeAdmission.close();
+        small.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    private static MemoryBudget.Admission admit(MemoryBudget budget, MemoryBudget.Estimate estimate) {
+        try {
+            return budget.admit(estimate);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String row(int i) {
+        return "First" + i % 97 + ",Last" + i % 89 + ",user" + i + "@example.com,Course " + i % 20
+                + ",2022-09-01,2022-11-30,completed," + (1 + i % 5) + ",2022-10-" + String.format("%02d", 1 + i % 28) + "\n";
+    }
+
+    private static MemoryBudget budget(long bytes) {
+        MemoryBudget budget = new MemoryBudget(new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(budget, "heapFraction", 0.5);
+        budget.init();
+        ReflectionTestUtils.setField(budget, "budgetBytes", bytes);
+        return budget;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.SaarniLearningAssignment.service;
+
+import com.example.SaarniLearningAssignment.model.CourseRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MergeStateStoreTests {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final LocalDate END = LocalDate.of(2024, 12, 31);
+
+    private final ObjectMapper mapper = OutputSerializer.createMapper();
+
+    @TempDir
+    Path dir;
+
+    private JsonWriterService writer;
+    private MergeStateStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+        writer = new JsonWriterService(new CsvProcessingService(metrics),
+                new OutputSerializer(false, OutputFormat.JSON, OutputCompression.NONE), metrics);
+        store = newStore();
+    }
+
+    @Test
+    void deltasGiveSameSummariesAsDeduplicatingAllFilesTogether() throws IOException {
+        List<CourseRecord> first = List.of(
+                record("anna@example.com", "Math", "completed", 3, "2024-03-01"),
+                record("anna@example.com", "Art", "inprogress", null, null),
+                record("ben@example.com", "Math", "failed", null, "2024-03-02"));
+        List<CourseRecord> second = List.of(
+                record("anna@example.com", "Math", "completed", 5, "2024-05-01"),
+                record("ben@example.com", "Math", "completed", 4, "2024-03-02"),
+                record("ben@example.com", "Art", "completed", 2, "2024-02-01"),
+                record("anna@example.com", "Art", "failed", null, null));
+
+        store.apply(first, "first.csv");
+        Path changes = store.apply(second, "second.csv");
+
+        RecordDeduplicator all = new RecordDeduplicator();
+        first.forEach(all::offer);
+        second.forEach(all::offer);
+        SummaryAggregator expected = new SummaryAggregator().acceptAll(all.records());
+
+        assertSameView(expected, store.view());
+        // The Art inprogress attempt without a date is not replaced by a failed one without a date
+        assertEquals(3, mapper.readTree(changes.resolve("course_results.json").toFile()).size());
+        assertEquals(2, mapper.readTree(changes.resolve("courses.json").toFile()).size());
+
+        store.close();
+        assertSameView(expected, newStore().view());
+    }
+
+    @Test
+    void damagedJournalTailIsDropped() throws IOException {
+        store.apply(List.of(record("anna@example.com", "Math", "completed", 3, "2024-03-01")), "first.csv");
+        store.close();
+        Files.writeString(dir.resolve("merged/state.ndjson"), "{\"email\":\"cut", StandardOpenOption.APPEND);
+
+        MergeStateStore reloaded = newStore();
+        reloaded.apply(List.of(record("ben@example.com", "Math", "failed", null, "2024-03-02")), "second.csv");
+        reloaded.close();
+
+        assertEquals(2, newStore().size());
+    }
+
+    @Test
+    void uncommittedDeltaLeavesStateAndFoldersUnchanged() throws IOException {
+        List<CourseRecord> first = List.of(record("anna@example.com", "Math", "completed", 3, "2024-03-01"));
+        store.apply(first, "first.csv");
+        String journal = Files.readString(dir.resolve("merged/state.ndjson"));
+
+        try (MergeStateStore.PendingDelta ignored = store.stage(List.of(
+                new CourseRecord("Renamed", "Last", "anna@example.com", "Math", START, END, "completed", 5,
+                        LocalDate.parse("2024-05-01")),
+                record("ben@example.com", "Art", "failed", null, "2024-03-02")), "second.csv")) {
+            // e.g. the database step fails before the delta is committed
+        }
+
+        assertSameView(new SummaryAggregator().acceptAll(first), store.view());
+        assertEquals(journal, Files.readString(dir.resolve("merged/state.ndjson")));
+        try (var folders = Files.list(dir.resolve("merged"))) {
+            assertEquals(1, folders.filter(Files::isDirectory).count());
+        }
+        store.close();
+        assertEquals(1, newStore().size());
+    }
+
+    private MergeStateStore newStore() throws IOException {
+        MergeStateStore created = new MergeStateStore(writer);
+        ReflectionTestUtils.setField(created, "enabled", true);
+        ReflectionTestUtils.setField(created, "mergeFolder", dir.resolve("merged").toString());
+        created.load();
+        return created;
+    }
+
+    private void assertSameView(SummaryAggregator expected, MergeStateStore.MergedView actual) {
+        assertEquals(json(expected.courses()), json(actual.courses()));
+        assertEquals(json(expected.users()), json(actual.users()));
+        assertEquals(json(expected.results()),
+                json(StreamSupport.stream(SummaryAggregator.resultsOf(actual.records()).spliterator(), false).toList()));
+    }
+
+    /**
+     * Order-independent comparison of the serialized entries.
+     */
+    private List<String> json(List<?> values) {
+        return values.stream()
+                .map(value -> mapper.valueToTree(value).toString())
+                .sorted()
+                .toList();
+    }
+
+    private static CourseRecord record(String email, String course, String status, Integer grade, String completed) {
+        return new CourseRecord("First", "Last", email, course, START, END, status, grade,
+                completed == null ? null : LocalDate.parse(completed));
+    }
+}
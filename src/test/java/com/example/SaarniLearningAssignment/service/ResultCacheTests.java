@@ -0,0 +1,115 @@
+package com.example.SaarniLearningAssignment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTests {
+
+    @TempDir
+    Path dir;
+
+    private JsonWriterService writer;
+    private ResultCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        OutputSerializer serializer = new OutputSerializer(true, OutputFormat.JSON, OutputCompression.NONE);
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+        writer = new JsonWriterService(new CsvProcessingService(metrics), serializer, metrics);
+        ReflectionTestUtils.setField(writer, "outputFolder", dir.resolve("output").toString());
+        cache = new ResultCache(writer, serializer);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheFolder", dir.resolve("cache").toString());
+        ReflectionTestUtils.setField(cache, "maxSizeBytes", 1_000_000L);
+        ReflectionTestUtils.setField(cache, "maxAgeMillis", 60_000L);
+        cache.loadEntries();
+    }
+
+    @Test
+    void identicalContentReusesStoredOutputs() throws IOException {
+        Path first = csv("first.csv", "same content");
+        Path second = csv("second.csv", "same content");
+        String key = cache.keyFor(first);
+        assertTrue(cache.lookup(key).isEmpty());
+
+        cache.store(key, outputFolder("first", "[1]"), new CsvProcessingService.ParseStats(3, 2, 1));
+        ResultCache.Hit hit = cache.lookup(cache.keyFor(second)).orElseThrow();
+        Path published = writer.publishCopy(hit.folder(), "second.csv");
+
+        assertEquals(new CsvProcessingService.ParseStats(3, 2, 1), hit.stats());
+        assertEquals("[1]", Files.readString(published.resolve("course_results.json")));
+        assertNotEquals(key, cache.keyFor(csv("third.csv", "other content")));
+        assertEquals(1, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedOverSizeLimit() throws IOException, InterruptedException {
+        ReflectionTestUtils.setField(cache, "maxSizeBytes", 2_000L);
+        String a = cache.keyFor(csv("a.csv", "a"));
+        String b = cache.keyFor(csv("b.csv", "b"));
+        String c = cache.keyFor(csv("c.csv", "c"));
+
+        cache.store(a, outputFolder("a", "x".repeat(300)), new CsvProcessingService.ParseStats(1, 1, 1));
+        cache.store(b, outputFolder("b", "x".repeat(300)), new CsvProcessingService.ParseStats(1, 1, 1));
+        Thread.sleep(5); // last use is tracked in milliseconds
+        cache.lookup(a);
+        cache.store(c, outputFolder("c", "x".repeat(300)), new CsvProcessingService.ParseStats(1, 1, 1));
+
+        assertTrue(cache.lookup(a).isPresent());
+        assertTrue(cache.lookup(b).isEmpty());
+        assertTrue(cache.lookup(c).isPresent());
+        assertEquals(1, cache.stats().getEvictions());
+        assertTrue(cache.stats().getSizeBytes() <= 2_000L);
+    }
+
+    @Test
+    void uploadHashIsForgottenWhenTheWorkerIsDoneWithTheFile() throws IOException {
+        Path upload = csv("upload.csv", "uploaded content");
+        try (InputStream in = cache.digesting(Files.newInputStream(upload))) {
+            in.readAllBytes();
+            cache.rememberUpload(upload, in);
+        }
+        Map<?, ?> digests = (Map<?, ?>) ReflectionTestUtils.getField(cache, "uploadDigests");
+        assertEquals(1, digests.size());
+
+        // e.g. the file failed before the worker asked for the cache key
+        cache.forgetUpload(upload);
+        assertTrue(digests.isEmpty());
+    }
+
+    @Test
+    void uploadsAreNotHashedWhileTheCacheIsBypassed() throws IOException {
+        ReflectionTestUtils.setField(cache, "mergeEnabled", true);
+        Path upload = csv("upload.csv", "uploaded content");
+        InputStream body = Files.newInputStream(upload);
+        try (InputStream in = cache.digesting(body)) {
+            assertSame(body, in);
+            cache.rememberUpload(upload, in);
+        }
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(cache, "uploadDigests")).isEmpty());
+    }
+
+    private Path csv(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content);
+    }
+
+    private Path outputFolder(String name, String content) throws IOException {
+        Path folder = Files.createDirectories(dir.resolve("output").resolve(name));
+        for (String file : writer.outputFileNames()) {
+            Files.writeString(folder.resolve(file), content);
+        }
+        return folder;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.SaarniLearningAssignment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadStoreTests {
+
+    private static final String CSV = "Etunimi,Sukunimi\nAnna,Virtanen\nBen,Smith\n";
+
+    @TempDir
+    Path input;
+
+    private JobRegistry jobRegistry;
+    private IngestionQueue queue;
+    private UploadStore store;
+
+    @BeforeEach
+    void setUp() {
+        jobRegistry = new JobRegistry();
+        ReflectionTestUtils.setField(jobRegistry, "retentionMillis", 60_000L);
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+        OutputSerializer serializer = new OutputSerializer(true, OutputFormat.JSON, OutputCompression.NONE);
+        ResultCache cache = new ResultCache(new JsonWriterService(new CsvProcessingService(metrics), serializer, metrics), serializer);
+        queue = new IngestionQueue(metrics);
+        ReflectionTestUtils.setField(queue, "capacity", 10);
+        ReflectionTestUtils.setField(queue, "order", IngestionQueue.Order.FIFO);
+        ReflectionTestUtils.setField(queue, "workers", 1);
+        queue.init();
+        store = new UploadStore(jobRegistry, cache, queue);
+        ReflectionTestUtils.setField(store, "inputFolder", input.toString());
+        ReflectionTestUtils.setField(store, "maxSize", 64L);
+    }
+
+    @Test
+    void oversizedUploadsAreRejectedWithoutLeavingFiles() throws IOException {
+        InputStream unreadable = InputStream.nullInputStream();
+        assertThrows(UploadStore.TooLargeException.class, () -> store.store("school.csv", unreadable, 65));
+
+        InputStream tooLong = new ByteArrayInputStream(CSV.repeat(3).getBytes(StandardCharsets.UTF_8));
+        assertThrows(UploadStore.TooLargeException.class, () -> store.store("school.csv", tooLong, -1));
+
+        assertEquals(List.of(), files());
+        store.store("../school.csv", body(CSV), -1);
+        assertEquals(List.of("school.csv"), files());
+        assertEquals(CSV, Files.readString(input.resolve("school.csv")));
+    }
+
+    @Test
+    void resumableUploadIsPublishedOnlyWhenComplete() throws IOException {
+        byte[] bytes = CSV.getBytes(StandardCharsets.UTF_8);
+        UploadStore.UploadSession session = store.start("school.csv", bytes.length);
+
+        UploadStore.Progress first = store.append(session, 0, new ByteArrayInputStream(bytes, 0, 10));
+        assertEquals(10, first.offset());
+        assertNull(first.job());
+        assertFalse(files().contains("school.csv"));
+
+        UploadStore.OffsetMismatchException mismatch = assertThrows(UploadStore.OffsetMismatchException.class,
+                () -> store.append(session, 5, new ByteArrayInputStream(bytes, 5, 5)));
+        assertEquals(10, mismatch.getOffset());
+
+        UploadStore.Progress last = store.append(session, 10, new ByteArrayInputStream(bytes, 10, bytes.length - 10));
+        assertNotNull(last.job());
+        assertEquals(List.of("school.csv"), files());
+        assertEquals(CSV, Files.readString(input.resolve("school.csv")));
+        assertTrue(store.find(session.getId()).isEmpty());
+        assertSame(last.job(), jobRegistry.claim("school.csv"));
+    }
+
+    @Test
+    void uploadOfAFileBeingProcessedIsRefusedWithoutReplacingIt() throws Exception {
+        ProcessingJob first = store.store("school.csv", body(CSV), -1);
+        IngestionQueue.Entry entry = queue.poll(0, TimeUnit.MILLISECONDS);
+        assertSame(first, jobRegistry.claim("school.csv"));
+
+        assertThrows(IngestionQueue.InFlightException.class, () -> store.store("school.csv", body("Etunimi\nCarl\n"), -1));
+        byte[] bytes = "Etunimi\nCarl\n".getBytes(StandardCharsets.UTF_8);
+        UploadStore.UploadSession session = store.start("school.csv", bytes.length);
+        assertThrows(IngestionQueue.InFlightException.class, () -> store.append(session, 0, new ByteArrayInputStream(bytes)));
+        assertEquals(CSV, Files.readString(input.resolve("school.csv")));
+        assertEquals(1, queue.status().getUploading());
+
+        // Once the first file is done, the complete resumable upload is published by an empty request
+        queue.done(entry, 0);
+        UploadStore.Progress last = store.append(session, bytes.length, InputStream.nullInputStream());
+        assertNotNull(last.job());
+        assertEquals(0, queue.status().getUploading());
+        assertEquals("Etunimi\nCarl\n", Files.readString(input.resolve("school.csv")));
+        assertSame(last.job(), jobRegistry.claim("school.csv"));
+    }
+
+    @Test
+    void sessionIsNotExpiredWhileDataIsArriving() throws Exception {
+        byte[] bytes = CSV.getBytes(StandardCharsets.UTF_8);
+        UploadStore.UploadSession session = store.start("school.csv", bytes.length);
+        // Every session counts as idle
+        ReflectionTestUtils.setField(store, "sessionTimeoutMillis", -1L);
+
+        InputStream sweptMidRequest = new FilterInputStream(new ByteArrayInputStream(bytes, 0, 10)) {
+            private boolean swept;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (!swept) {
+                    swept = true;
+                    Thread sweeper = new Thread(store::expireSessions);
+                    sweeper.start();
+                    try {
+                        sweeper.join(10_000);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return super.read(b, off, len);
+            }
+        };
+        assertEquals(10, store.append(session, 0, sweptMidRequest).offset());
+        assertTrue(store.find(session.getId()).isPresent());
+
+        store.expireSessions();
+        assertTrue(store.find(session.getId()).isEmpty());
+        assertEquals(List.of(), files());
+        assertEquals(0, queue.status().getUploading());
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(input)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}